@@ -0,0 +1,173 @@
+package bot_logs;
+
+import settings.Settings;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class BotLogWriter implements Closeable {
+
+    public static final String ECHO_PREFERENCE = "log.echo_to_console";
+    public static final String ECHO_RATE_PREFERENCE = "log.echo_max_lines_per_second";
+
+    private static final int FLUSH_THRESHOLD_CHARS = 32 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 1_000;
+
+    private static final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Set<BotLogWriter> openWriters = ConcurrentHashMap.newKeySet();
+
+    static {
+        flushExecutor.scheduleWithFixedDelay(() -> openWriters.forEach(BotLogWriter::flushQuietly),
+                FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> openWriters.forEach(BotLogWriter::flushQuietly)));
+    }
+
+    private final String name;
+    private final File logFile;
+    private final Object fileLock = new Object();
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final boolean echoToConsole;
+    private final int maxEchoLinesPerSecond;
+
+    private OutputStream fileStream;
+    private long segmentBytes;
+    private long segmentStart;
+
+    private StringBuilder pending = new StringBuilder(FLUSH_THRESHOLD_CHARS);
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private long echoWindowStart;
+    private int echoedInWindow;
+    private int suppressedInWindow;
+
+    public BotLogWriter(final String name, final File logFile) throws IOException {
+        this.name = name;
+        this.logFile = logFile;
+        this.maxSegmentBytes = LogArchiver.getMaxSegmentBytes();
+        this.maxSegmentAgeMillis = LogArchiver.getMaxSegmentAgeMillis();
+        openSegment();
+        this.echoToConsole = Boolean.parseBoolean(Settings.getPreference(ECHO_PREFERENCE, "true"));
+        this.maxEchoLinesPerSecond = Settings.getIntPreference(ECHO_RATE_PREFERENCE, 20);
+        openWriters.add(this);
+        LogArchiver.markActive(logFile);
+    }
+
+    public void write(final String line) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            pending.append(line).append(System.lineSeparator());
+
+            // Noisy bots are flushed early on the writer thread rather than on the caller's thread
+            if (pending.length() >= FLUSH_THRESHOLD_CHARS && !flushScheduled) {
+                flushScheduled = true;
+                flushExecutor.execute(this::flushQuietly);
+            }
+        }
+
+        if (echoToConsole) {
+            echo(line);
+        }
+    }
+
+    public void flush() throws IOException {
+        synchronized (fileLock) {
+            StringBuilder toWrite;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pending.length() == 0) {
+                    return;
+                }
+                toWrite = pending;
+                pending = new StringBuilder(FLUSH_THRESHOLD_CHARS);
+            }
+            // Encoded here rather than by a writer, so the segment size is counted in bytes like the file
+            byte[] bytes = toWrite.toString().getBytes(StandardCharsets.UTF_8);
+            fileStream.write(bytes);
+            fileStream.flush();
+
+            segmentBytes += bytes.length;
+            if (segmentBytes >= maxSegmentBytes || System.currentTimeMillis() - segmentStart >= maxSegmentAgeMillis) {
+                rotate();
+            }
+        }
+    }
+
+    // Everything written so far is in the returned channel, even if flushing rotated the file
+    public FileChannel openForReading() throws IOException {
+        synchronized (fileLock) {
+            flush();
+            return FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        fileStream = new FileOutputStream(logFile, true);
+        segmentBytes = logFile.length();
+        segmentStart = System.currentTimeMillis();
+    }
+
+    private void rotate() throws IOException {
+        fileStream.close();
+        LogArchiver.archive(logFile);
+        openSegment();
+    }
+
+    @Override
+    public void close() throws IOException {
+        openWriters.remove(this);
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+            synchronized (fileLock) {
+                fileStream.close();
+            }
+            LogArchiver.markInactive(logFile);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized void echo(final String line) {
+        long now = System.currentTimeMillis();
+        if (now - echoWindowStart >= 1_000) {
+            if (suppressedInWindow > 0) {
+                System.out.printf("[%s] %d log lines not echoed%n", name, suppressedInWindow);
+            }
+            echoWindowStart = now;
+            echoedInWindow = 0;
+            suppressedInWindow = 0;
+        }
+
+        if (echoedInWindow < maxEchoLinesPerSecond) {
+            echoedInWindow++;
+            System.out.println(line);
+        } else {
+            suppressedInWindow++;
+        }
+    }
+}
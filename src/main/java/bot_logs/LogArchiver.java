@@ -0,0 +1,156 @@
+package bot_logs;
+
+import settings.Settings;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+public final class LogArchiver {
+
+    public static final String MAX_SEGMENT_MB_PREFERENCE = "log.max_segment_mb";
+    public static final String MAX_SEGMENT_HOURS_PREFERENCE = "log.max_segment_hours";
+    public static final String RETENTION_DAYS_PREFERENCE = "log.retention_days";
+    public static final String RETENTION_MAX_MB_PREFERENCE = "log.retention_max_mb";
+
+    private static final String ARCHIVE_EXTENSION = ".log.gz";
+    private static final long SWEEP_INTERVAL_MINUTES = 15;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static final AtomicBoolean sweeperStarted = new AtomicBoolean();
+    private static final Set<String> activeLogFiles = ConcurrentHashMap.newKeySet();
+
+    private LogArchiver() {
+    }
+
+    public static long getMaxSegmentBytes() {
+        return Settings.getIntPreference(MAX_SEGMENT_MB_PREFERENCE, 50) * 1024L * 1024L;
+    }
+
+    public static long getMaxSegmentAgeMillis() {
+        return TimeUnit.HOURS.toMillis(Settings.getIntPreference(MAX_SEGMENT_HOURS_PREFERENCE, 24));
+    }
+
+    public static void startRetentionSweeper() {
+        if (sweeperStarted.compareAndSet(false, true)) {
+            executor.scheduleWithFixedDelay(LogArchiver::sweep, 0, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    static void markActive(final File logFile) {
+        activeLogFiles.add(logFile.getAbsolutePath());
+    }
+
+    static void markInactive(final File logFile) {
+        activeLogFiles.remove(logFile.getAbsolutePath());
+    }
+
+    // Moves a closed segment out of the way and compresses it in the background
+    public static void archive(final File segment) {
+        if (!segment.exists() || segment.length() == 0) {
+            return;
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        File closedSegment = new File(segment.getParentFile(), segment.getName() + "." + timestamp + ".log");
+
+        if (!segment.renameTo(closedSegment)) {
+            System.err.println("Failed to rotate log file: " + segment);
+            return;
+        }
+
+        executor.execute(() -> compress(closedSegment));
+    }
+
+    private static void compress(final File closedSegment) {
+        if (!closedSegment.exists()) {
+            return;
+        }
+
+        File archive = new File(closedSegment.getParentFile(), closedSegment.getName().replaceAll("\\.log$", ARCHIVE_EXTENSION));
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(closedSegment));
+             OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(archive)), 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            archive.delete();
+            return;
+        }
+
+        archive.setLastModified(closedSegment.lastModified());
+
+        if (!closedSegment.delete()) {
+            System.err.println("Failed to delete compressed log segment: " + closedSegment);
+        }
+    }
+
+    private static void sweep() {
+        File[] logFiles = new File(Settings.LOGS_DIR).listFiles(File::isFile);
+        if (logFiles == null) {
+            return;
+        }
+
+        long maxAgeMillis = TimeUnit.DAYS.toMillis(Settings.getIntPreference(RETENTION_DAYS_PREFERENCE, 14));
+        long maxTotalBytes = Settings.getIntPreference(RETENTION_MAX_MB_PREFERENCE, 2048) * 1024L * 1024L;
+        long now = System.currentTimeMillis();
+
+        try {
+            // Segments left uncompressed by a previous run are compressed first
+            for (final File logFile : logFiles) {
+                if (logFile.getName().endsWith(".log") && !activeLogFiles.contains(logFile.getAbsolutePath())) {
+                    compress(logFile);
+                }
+            }
+
+            logFiles = new File(Settings.LOGS_DIR).listFiles(File::isFile);
+            if (logFiles == null) {
+                return;
+            }
+
+            // Oldest first, so the size limit removes the oldest history
+            Arrays.sort(logFiles, Comparator.comparingLong(File::lastModified));
+
+            long totalBytes = Arrays.stream(logFiles).mapToLong(File::length).sum();
+
+            for (final File logFile : logFiles) {
+                if (activeLogFiles.contains(logFile.getAbsolutePath())) {
+                    continue;
+                }
+
+                boolean expired = now - logFile.lastModified() > maxAgeMillis;
+                boolean overBudget = totalBytes > maxTotalBytes;
+
+                // Current segments of configurations that no longer exist simply age out
+                if (expired || (overBudget && logFile.getName().endsWith(ARCHIVE_EXTENSION))) {
+                    long length = logFile.length();
+                    if (Files.deleteIfExists(logFile.toPath())) {
+                        totalBytes -= length;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
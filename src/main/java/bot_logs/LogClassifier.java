@@ -0,0 +1,263 @@
+package bot_logs;
+
+import settings.Settings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+// Matches every known pattern against a line in a single pass using an Aho-Corasick automaton.
+// Patterns are matched on ASCII case-folded text, case sensitive patterns are verified against the original line.
+public final class LogClassifier {
+
+    public interface Listener {
+        void onLogEvent(LogEvent event, String line);
+    }
+
+    public static final String STOP_PATTERNS_PREFERENCE = "log.stop_patterns";
+
+    private static final int MAX_PATTERNS = Long.SIZE;
+
+    private static volatile LogClassifier defaultClassifier;
+
+    private final PatternEntry[] patterns;
+    private final char[] charClasses = new char[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final long[] outputs;
+
+    private LogClassifier(final List<PatternEntry> patternList) {
+        patterns = patternList.toArray(new PatternEntry[0]);
+
+        int alphabet = 1;
+        for (final PatternEntry pattern : patterns) {
+            for (int i = 0; i < pattern.text.length(); i++) {
+                char c = fold(pattern.text.charAt(i));
+                if (charClasses[c] == 0) {
+                    charClasses[c] = (char) alphabet++;
+                }
+            }
+        }
+        alphabetSize = alphabet;
+
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Long> trieOutputs = new ArrayList<>();
+        trie.add(newState());
+        trieOutputs.add(0L);
+
+        for (int id = 0; id < patterns.length; id++) {
+            String text = patterns[id].text;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                int symbol = charClasses[fold(text.charAt(i))];
+                if (trie.get(state)[symbol] == -1) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    trieOutputs.add(0L);
+                }
+                state = trie.get(state)[symbol];
+            }
+            trieOutputs.set(state, trieOutputs.get(state) | (1L << id));
+        }
+
+        // Turn the trie into a complete DFA by following failure links breadth first
+        int stateCount = trie.size();
+        transitions = new int[stateCount * alphabetSize];
+        outputs = new long[stateCount];
+        int[] failure = new int[stateCount];
+
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int next = trie.get(0)[symbol];
+            if (next == -1) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        outputs[0] = trieOutputs.get(0);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = trieOutputs.get(state) | outputs[failure[state]];
+
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int next = trie.get(state)[symbol];
+                if (next == -1) {
+                    transitions[state * alphabetSize + symbol] = transitions[failure[state] * alphabetSize + symbol];
+                } else {
+                    transitions[state * alphabetSize + symbol] = next;
+                    failure[next] = transitions[failure[state] * alphabetSize + symbol];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    public static LogClassifier getDefault() {
+        if (defaultClassifier == null) {
+            synchronized (LogClassifier.class) {
+                if (defaultClassifier == null) {
+                    defaultClassifier = createDefault();
+                }
+            }
+        }
+        return defaultClassifier;
+    }
+
+    // Read once, stop patterns that do not fit are reported here rather than failing for every line classified
+    private static LogClassifier createDefault() {
+        Builder builder = getBuiltInPatterns();
+
+        // Extra patterns are separated by '|', for example: log.stop_patterns=You are dead|Out of food
+        String stopPatterns = Settings.getPreference(STOP_PATTERNS_PREFERENCE, "");
+        List<String> ignoredPatterns = new ArrayList<>();
+        for (final String stopPattern : stopPatterns.split("\\|")) {
+            if (stopPattern.trim().isEmpty()) {
+                continue;
+            }
+            if (builder.getPatternCount() < MAX_PATTERNS) {
+                builder.addPattern(stopPattern.trim(), LogEvent.STOP_PATTERN_MATCHED, false);
+            } else {
+                ignoredPatterns.add(stopPattern.trim());
+            }
+        }
+        if (!ignoredPatterns.isEmpty()) {
+            System.err.printf("At most %d log patterns are supported, ignoring the stop patterns %s%n", MAX_PATTERNS, ignoredPatterns);
+        }
+
+        try {
+            return builder.build();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to use the stop patterns, only the built-in patterns are used: " + e.getMessage());
+            return getBuiltInPatterns().build();
+        }
+    }
+
+    private static Builder getBuiltInPatterns() {
+        return new Builder()
+                .addPattern("client is out of date", LogEvent.CLIENT_OUT_OF_DATE, false)
+                .addPattern("update web walking", LogEvent.MISSING_WEB_WALK_DATA, false)
+                .addPattern("invalid username or password", LogEvent.INVALID_LOGIN, false)
+                .addPattern("Successfully loaded OSBot", LogEvent.CLIENT_LOADED, true)
+                .addPattern("Bot exited", LogEvent.BOT_EXITED, true)
+                .addSuffixPattern("has exited!", "Script", LogEvent.SCRIPT_EXITED);
+    }
+
+    public void classify(final String line, final Listener listener) {
+        // Trailing whitespace is ignored, so suffix patterns behave as if the line was trimmed
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        long matched = 0;
+        int state = 0;
+        for (int i = 0; i < end; i++) {
+            state = transitions[state * alphabetSize + charClasses[fold(line.charAt(i))]];
+            if (outputs[state] != 0) {
+                matched |= verify(outputs[state], line, i + 1, end);
+            }
+        }
+
+        long remaining = matched;
+        while (remaining != 0) {
+            int id = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+
+            PatternEntry pattern = patterns[id];
+            if (pattern.event == null) {
+                continue;
+            }
+            if (pattern.requiredPatternId != -1 && (matched & (1L << pattern.requiredPatternId)) == 0) {
+                continue;
+            }
+            listener.onLogEvent(pattern.event, line);
+        }
+    }
+
+    private long verify(long candidates, final String line, final int matchEnd, final int end) {
+        long verified = 0;
+        while (candidates != 0) {
+            int id = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+
+            PatternEntry pattern = patterns[id];
+            if (pattern.anchoredAtEnd && matchEnd != end) {
+                continue;
+            }
+            if (pattern.caseSensitive && !line.regionMatches(matchEnd - pattern.text.length(), pattern.text, 0, pattern.text.length())) {
+                continue;
+            }
+            verified |= 1L << id;
+        }
+        return verified;
+    }
+
+    private int[] newState() {
+        int[] state = new int[alphabetSize];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static char fold(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public static final class Builder {
+
+        private final List<PatternEntry> patterns = new ArrayList<>();
+
+        public Builder addPattern(final String text, final LogEvent event, final boolean caseSensitive) {
+            add(new PatternEntry(text, event, caseSensitive, false, -1));
+            return this;
+        }
+
+        // Matches lines ending with suffix that also contain requiredText anywhere, both case sensitive
+        public Builder addSuffixPattern(final String suffix, final String requiredText, final LogEvent event) {
+            int requiredPatternId = add(new PatternEntry(requiredText, null, true, false, -1));
+            add(new PatternEntry(suffix, event, true, true, requiredPatternId));
+            return this;
+        }
+
+        public int getPatternCount() {
+            return patterns.size();
+        }
+
+        public LogClassifier build() {
+            return new LogClassifier(patterns);
+        }
+
+        private int add(final PatternEntry pattern) {
+            if (pattern.text.isEmpty()) {
+                throw new IllegalArgumentException("Log patterns must not be empty");
+            }
+            if (patterns.size() == MAX_PATTERNS) {
+                throw new IllegalArgumentException("At most " + MAX_PATTERNS + " log patterns are supported");
+            }
+            patterns.add(pattern);
+            return patterns.size() - 1;
+        }
+    }
+
+    private static final class PatternEntry {
+        private final String text;
+        private final LogEvent event;
+        private final boolean caseSensitive;
+        private final boolean anchoredAtEnd;
+        private final int requiredPatternId;
+
+        private PatternEntry(final String text, final LogEvent event, final boolean caseSensitive, final boolean anchoredAtEnd, final int requiredPatternId) {
+            this.text = text;
+            this.event = event;
+            this.caseSensitive = caseSensitive;
+            this.anchoredAtEnd = anchoredAtEnd;
+            this.requiredPatternId = requiredPatternId;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package bot_logs;
+
+public enum LogEvent {
+    CLIENT_OUT_OF_DATE,
+    MISSING_WEB_WALK_DATA,
+    INVALID_LOGIN,
+    CLIENT_LOADED,
+    BOT_EXITED,
+    SCRIPT_EXITED,
+    STOP_PATTERN_MATCHED
+}
@@ -0,0 +1,320 @@
+package bot_logs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Sparse line offset index over a log file, lines are read on demand through memory mapped pages.
+// Only the offset of every LINES_PER_PAGE-th line is kept, so the heap used does not depend on the size of the log.
+// Rotated segments stay readable through their open channel, so a viewer can scroll back past a rotation.
+// The last lines of the file are indexed first. Lines are numbered from the first of them, the older lines that are
+// indexed afterwards get negative numbers, so the numbers of lines already shown never change.
+public final class LogLineIndex implements Closeable {
+
+    private static final int LINES_PER_PAGE = 256;
+    private static final int TAIL_LINES = 1_000;
+    private static final int CACHED_PAGES = 16;
+    private static final long SCAN_WINDOW_BYTES = 16 * 1024 * 1024;
+    private static final int SCAN_CHUNK_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Long, String[]> pageCache = new LinkedHashMap<Long, String[]>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, String[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final long initialLength;
+    private long tailStart;
+    private volatile long lineCount;
+    private volatile long olderLineCount;
+    private boolean closed;
+
+    private LogLineIndex(final Path path, final long initialLength) {
+        this.path = path;
+        this.initialLength = initialLength;
+    }
+
+    // Nothing is read until indexTail() is called, so opening is cheap even for huge files
+    public static LogLineIndex open(final File logFile, final FileChannel channel, final long initialLength) throws IOException {
+        LogLineIndex index = new LogLineIndex(logFile.toPath(), initialLength);
+        if (channel != null) {
+            index.addSegment(channel, index.readFileKey());
+        }
+        return index;
+    }
+
+    public static LogLineIndex open(final File logFile) throws IOException {
+        if (!logFile.exists()) {
+            return open(logFile, null, 0);
+        }
+        FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+        return open(logFile, channel, channel.size());
+    }
+
+    // Lines from the start of the tail on, numbered 0 to getLineCount() - 1
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    // Lines before the tail, numbered -getOlderLineCount() to -1 once indexOlderContent() is done
+    public long getOlderLineCount() {
+        return olderLineCount;
+    }
+
+    // Indexes the last TAIL_LINES lines the file had when it was opened, only those are read however large the file is.
+    // Indexing the tail and updates are expected to run on a single thread, lines can be read from any thread meanwhile.
+    public long indexTail() throws IOException {
+        Segment segment = currentSegment();
+        if (segment != null) {
+            tailStart = findTailStart(segment.channel, initialLength);
+            segment.startAt(tailStart);
+            scan(segment, initialLength);
+        }
+        return lineCount;
+    }
+
+    // Indexes the lines before the tail, on a thread of its own as it reads the rest of the file.
+    // May run while the index is updated, the older lines are only added once all of them have been scanned.
+    public long indexOlderContent() throws IOException {
+        Segment tail;
+        synchronized (this) {
+            if (segments.isEmpty() || tailStart == 0) {
+                return 0;
+            }
+            tail = segments.get(0);
+        }
+        scan(new Segment(tail.channel, tail.fileKey, 0), tailStart);
+        return olderLineCount;
+    }
+
+    // Indexes lines written since the last update, following the file to its new segment when it was rotated
+    public long update() throws IOException {
+        Object currentFileKey = readFileKey();
+
+        Segment segment = currentSegment();
+        if (segment == null) {
+            if (Files.exists(path)) {
+                addSegment(FileChannel.open(path, StandardOpenOption.READ), currentFileKey);
+                scan(currentSegment(), currentSegment().channel.size());
+            }
+            return lineCount;
+        }
+
+        boolean rotated = isRotated(segment, currentFileKey);
+
+        // A rotated segment is complete, read whatever was written to it before the rotation first
+        scan(segment, segment.channel.size());
+
+        if (rotated) {
+            addSegment(FileChannel.open(path, StandardOpenOption.READ), currentFileKey);
+            scan(currentSegment(), currentSegment().channel.size());
+        }
+        return lineCount;
+    }
+
+    public synchronized String getLine(final long lineNumber) throws IOException {
+        if (lineNumber < -olderLineCount || lineNumber >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " is not indexed");
+        }
+
+        int segmentIndex = segments.size() - 1;
+        while (segments.get(segmentIndex).firstLine > lineNumber) {
+            segmentIndex--;
+        }
+        Segment segment = segments.get(segmentIndex);
+
+        long lineInSegment = lineNumber - segment.firstLine;
+        int page = (int) (lineInSegment / LINES_PER_PAGE);
+        long pageKey = ((long) segmentIndex << 32) | page;
+
+        String[] lines = pageCache.get(pageKey);
+        if (lines == null) {
+            lines = readPage(segment, page);
+            pageCache.put(pageKey, lines);
+        }
+        return lines[(int) (lineInSegment % LINES_PER_PAGE)];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        pageCache.clear();
+        for (final Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    private String[] readPage(final Segment segment, final int page) throws IOException {
+        long start = segment.pageOffsets[page];
+        long end = page + 1 < segment.pageCount ? segment.pageOffsets[page + 1] : segment.indexedBytes;
+        int linesInPage = (int) Math.min(LINES_PER_PAGE, segment.lineCount - (long) page * LINES_PER_PAGE);
+
+        // Lines are capped by the output pump, so a page is at most a few megabytes
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        String[] lines = new String[linesInPage];
+        int lineStart = 0;
+        int line = 0;
+        for (int i = 0; i < bytes.length && line < linesInPage; i++) {
+            if (bytes[i] == '\n') {
+                int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                lines[line++] = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    // Only complete lines are indexed, a partially flushed line is picked up by the next scan
+    private void scan(final Segment segment, final long length) throws IOException {
+        long position = segment.indexedBytes;
+        long segmentLines = segment.lineCount;
+        long lastLineEnd = position;
+        List<Long> newPageOffsets = new ArrayList<>();
+
+        byte[] chunk = new byte[SCAN_CHUNK_BYTES];
+
+        while (position < length) {
+            long windowSize = Math.min(SCAN_WINDOW_BYTES, length - position);
+            MappedByteBuffer window = segment.channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+            // Bulk copies out of the mapping are much faster than reading it byte by byte
+            long chunkStart = position;
+            while (window.hasRemaining()) {
+                int chunkSize = Math.min(chunk.length, window.remaining());
+                window.get(chunk, 0, chunkSize);
+                for (int i = 0; i < chunkSize; i++) {
+                    if (chunk[i] == '\n') {
+                        segmentLines++;
+                        lastLineEnd = chunkStart + i + 1;
+                        if (segmentLines % LINES_PER_PAGE == 0) {
+                            newPageOffsets.add(lastLineEnd);
+                        }
+                    }
+                }
+                chunkStart += chunkSize;
+            }
+            position += windowSize;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            if (segments.contains(segment)) {
+                // The last page may have grown, so it has to be read again
+                long lastPageKey = ((long) segments.indexOf(segment) << 32) | (segment.pageCount - 1);
+                pageCache.remove(lastPageKey);
+                lineCount += segmentLines - segment.lineCount;
+            } else {
+                // The content before the tail, it goes in front and moves the other segments to the next page keys
+                segment.firstLine = -segmentLines;
+                segments.add(0, segment);
+                pageCache.clear();
+                olderLineCount = segmentLines;
+            }
+
+            // An offset at the very end starts a page that has no lines yet
+            for (final long pageOffset : newPageOffsets) {
+                segment.addPage(pageOffset);
+            }
+            segment.lineCount = segmentLines;
+            segment.indexedBytes = lastLineEnd;
+        }
+    }
+
+    // The offset TAIL_LINES complete lines before the end, found by reading back from the end
+    private static long findTailStart(final FileChannel channel, final long length) throws IOException {
+        byte[] chunk = new byte[SCAN_CHUNK_BYTES];
+        int lineEnds = 0;
+
+        long chunkEnd = length;
+        while (chunkEnd > 0) {
+            long chunkStart = Math.max(0, chunkEnd - SCAN_CHUNK_BYTES);
+            int chunkSize = (int) (chunkEnd - chunkStart);
+            channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkSize).get(chunk, 0, chunkSize);
+            for (int i = chunkSize - 1; i >= 0; i--) {
+                if (chunk[i] == '\n' && ++lineEnds > TAIL_LINES) {
+                    return chunkStart + i + 1;
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return 0;
+    }
+
+    private boolean isRotated(final Segment segment, final Object currentFileKey) throws IOException {
+        if (currentFileKey == null && !Files.exists(path)) {
+            // The segment has been moved away and the next one has not been created yet
+            return false;
+        }
+        if (segment.fileKey != null && currentFileKey != null) {
+            return !Objects.equals(segment.fileKey, currentFileKey);
+        }
+        // Not every file system has file keys, a file that shrank must have been replaced
+        return Files.size(path) < segment.channel.size();
+    }
+
+    private Object readFileKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private synchronized void addSegment(final FileChannel channel, final Object fileKey) {
+        segments.add(new Segment(channel, fileKey, lineCount));
+    }
+
+    private synchronized Segment currentSegment() {
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private final Object fileKey;
+        private long firstLine;
+        private long[] pageOffsets = new long[16];
+        private int pageCount = 1;
+        private long lineCount;
+        private long indexedBytes;
+
+        private Segment(final FileChannel channel, final Object fileKey, final long firstLine) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+            this.firstLine = firstLine;
+        }
+
+        private void startAt(final long offset) {
+            pageOffsets[0] = offset;
+            indexedBytes = offset;
+        }
+
+        private void addPage(final long offset) {
+            if (pageCount == pageOffsets.length) {
+                pageOffsets = Arrays.copyOf(pageOffsets, pageOffsets.length * 2);
+            }
+            pageOffsets[pageCount++] = offset;
+        }
+    }
+}
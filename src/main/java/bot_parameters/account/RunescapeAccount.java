@@ -2,6 +2,7 @@ package bot_parameters.account;
 
 import bot_parameters.interfaces.BotParameter;
 import bot_parameters.interfaces.Copyable;
+import javafx.beans.Observable;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -39,7 +40,7 @@ public final class RunescapeAccount extends Account implements BotParameter, Cop
     }
 
     public void setPin(final int pin) {
-        this.pin = new SimpleIntegerProperty(pin);
+        this.pin.set(pin);
     }
 
     private void writeObject(ObjectOutputStream stream) throws IOException {
@@ -65,6 +66,11 @@ public final class RunescapeAccount extends Account implements BotParameter, Cop
         return new String[]{"-bot", String.format("%s:%s:%d", getUsername(), getPassword(), pin.get())};
     }
 
+    @Override
+    public Observable[] getParameterObservables() {
+        return new Observable[]{username, password, pin};
+    }
+
     @Override
     public RunescapeAccount createCopy() {
         return new RunescapeAccount(getUsername(), getPassword(), getPin());
@@ -74,6 +80,10 @@ public final class RunescapeAccount extends Account implements BotParameter, Cop
         return isBanned.get();
     }
 
+    public void setBanned(final boolean isBanned) {
+        this.isBanned.set(isBanned);
+    }
+
     public void checkIsBanned() {
         HttpClient httpClient = HttpClientBuilder.create().build();
 
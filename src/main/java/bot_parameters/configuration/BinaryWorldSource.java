@@ -0,0 +1,91 @@
+package bot_parameters.configuration;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the world list the game client itself loads, a few kilobytes of binary instead of the server list page.
+// Big endian: the length of the rest, a world count, then per world its number, flags, address, activity, location
+// and player count. Strings are windows-1252 and end with a zero byte.
+// Activities are still read from the activity text, as with the server list page, so both sources agree.
+public final class BinaryWorldSource implements WorldSource {
+
+    public static final String DEFAULT_URL = "http://www.runescape.com/g=oldscape/slr.ws?order=LPWM";
+
+    private static final int MEMBERS_FLAG = 1;
+    private static final int MAX_LENGTH = 1 << 20;
+    private static final Charset CHARSET = Charset.forName("windows-1252");
+
+    private final String url;
+
+    public BinaryWorldSource(final String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getURL() {
+        return url;
+    }
+
+    @Override
+    public List<World> read(final InputStream inputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        int length = dataInputStream.readInt();
+        if (length < 2 || length > MAX_LENGTH) {
+            throw new IOException("Invalid world list length " + length);
+        }
+
+        byte[] data = new byte[length];
+        dataInputStream.readFully(data);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        try {
+            int worldCount = buffer.getShort() & 0xFFFF;
+            List<World> worlds = new ArrayList<>(worldCount);
+            for (int i = 0; i < worldCount; i++) {
+                int number = buffer.getShort() & 0xFFFF;
+                int flags = buffer.getInt();
+                skipString(buffer); // address
+                String activity = readString(buffer);
+                int location = buffer.get() & 0xFF;
+                int population = buffer.getShort(); // -1 when the world is offline
+
+                WorldType worldType = (flags & MEMBERS_FLAG) != 0 ? WorldType.MEMBERS : WorldType.F2P;
+                worlds.add(new World(worldType, number, activity.equals("-") ? "" : activity, Math.max(-1, population), getRegion(location)));
+            }
+            return worlds;
+        } catch (RuntimeException e) {
+            throw new IOException("Truncated world list", e);
+        }
+    }
+
+    private static WorldAttribute getRegion(final int location) {
+        switch (location) {
+            case 0:
+                return WorldAttribute.US;
+            case 1:
+                return WorldAttribute.UK;
+            case 3:
+                return WorldAttribute.AUSTRALIA;
+            case 7:
+                return WorldAttribute.GERMANY;
+            default:
+                return null;
+        }
+    }
+
+    private static void skipString(final ByteBuffer buffer) {
+        while (buffer.get() != 0) {
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        int start = buffer.position();
+        skipString(buffer);
+        return new String(buffer.array(), start, buffer.position() - start - 1, CHARSET);
+    }
+}
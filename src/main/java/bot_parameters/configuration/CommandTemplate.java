@@ -0,0 +1,47 @@
+package bot_parameters.configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The client arguments of a configuration, rendered once and reused until one of the properties they come from changes.
+// The debug port and world are left open, they are chosen for every process that is started.
+final class CommandTemplate {
+
+    private final int revision;
+    private final List<String> options;
+    private final int debugPortIndex;
+    private final List<List<String>> scriptParameters;
+
+    // debugPortIndex is where -debug and a leased port go in options, -1 when the port is fixed in the options already
+    CommandTemplate(final int revision, final List<String> options, final int debugPortIndex, final List<List<String>> scriptParameters) {
+        this.revision = revision;
+        this.options = Collections.unmodifiableList(new ArrayList<>(options));
+        this.debugPortIndex = debugPortIndex;
+        this.scriptParameters = Collections.unmodifiableList(new ArrayList<>(scriptParameters));
+    }
+
+    int getRevision() {
+        return revision;
+    }
+
+    int getScriptCount() {
+        return scriptParameters.size();
+    }
+
+    // A null debug port leaves -debug out
+    List<String> getOptions(final String debugPort, final String[] worldParameter) {
+        List<String> filledOptions = new ArrayList<>(options.size() + 4);
+        filledOptions.addAll(options);
+        if (debugPortIndex != -1 && debugPort != null) {
+            filledOptions.add(debugPortIndex, debugPort);
+            filledOptions.add(debugPortIndex, "-debug");
+        }
+        Collections.addAll(filledOptions, worldParameter);
+        return filledOptions;
+    }
+
+    List<String> getScriptParameters(final int scriptIndex) {
+        return scriptParameters.get(scriptIndex);
+    }
+}
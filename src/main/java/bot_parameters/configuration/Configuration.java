@@ -1,34 +1,64 @@
 package bot_parameters.configuration;
 
+import bot_logs.BotLogWriter;
+import bot_logs.LogArchiver;
+import bot_logs.LogClassifier;
+import bot_logs.LogEvent;
+import bot_logs.LogLineIndex;
 import bot_parameters.account.RunescapeAccount;
 import bot_parameters.interfaces.BotParameter;
 import bot_parameters.interfaces.Copyable;
+import bot_parameters.proxy.LatencyProbe;
 import bot_parameters.proxy.Proxy;
 import bot_parameters.script.Script;
+import bot_process.OutputPump;
+import bot_process.PortAllocator;
+import bot_process.ProcessTree;
 import exceptions.ClientOutOfDateException;
 import exceptions.IncorrectLoginException;
 import exceptions.MissingWebWalkDataException;
 import gui.dialogues.error_dialog.ExceptionDialog;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.WeakInvalidationListener;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleListProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import metrics.FleetMetrics;
+import osbot_client.ClientClassDataArchive;
 import osbot_client.OSBotClient;
 import settings.Settings;
 
 import java.io.*;
-import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
 
 public final class Configuration implements BotParameter, Copyable<Configuration>, Serializable {
 
     private static final long serialVersionUID = 1938451332017337304L;
 
+    private static final String LEASED_DEBUG_PORT_PLACEHOLDER = "<leased on start>";
+    private static final String RANDOM_WORLD_PLACEHOLDER = "<chosen on start>";
+
+    // Headless mode replaces the dialog, the JavaFX toolkit is never started there
+    private static volatile Consumer<Exception> runErrorHandler = exception -> Platform.runLater(() -> new ExceptionDialog(exception).show());
+
     private SimpleObjectProperty<RunescapeAccount> runescapeAccount;
     private SimpleListProperty<Script> scripts;
     private SimpleObjectProperty<Proxy> proxy;
@@ -48,18 +78,41 @@ public final class Configuration implements BotParameter, Copyable<Configuration
     private SimpleBooleanProperty stopAfterBreak = new SimpleBooleanProperty();
     private SimpleBooleanProperty mirrorMode = new SimpleBooleanProperty();
     private SimpleBooleanProperty launchGame = new SimpleBooleanProperty();
-    private SimpleListProperty<World> worlds = new SimpleListProperty<>(FXCollections.observableArrayList());
+    private SimpleObjectProperty<WorldSelection> worlds = new SimpleObjectProperty<>(WorldSelection.empty());
     private SimpleBooleanProperty isRunning = new SimpleBooleanProperty();
     private SimpleBooleanProperty closeClient = new SimpleBooleanProperty();
+    private SimpleStringProperty jvmProfile = new SimpleStringProperty(JVMProfile.DEFAULT_PROFILE_NAME);
+    private SimpleBooleanProperty restartOnCrash = new SimpleBooleanProperty();
+    // When set, the worlds are chosen by this rule from the current world list instead of the fixed selection
+    private SimpleObjectProperty<WorldRule> worldRule = new SimpleObjectProperty<>();
     private String logFileName;
 
-    private int processID;
+    private volatile Process process;
+    private volatile int processID = -1;
+    private volatile List<Integer> clientPIDs = Collections.emptyList();
+    private volatile boolean stopRequested;
+    // Log viewers, given each line as it is written. The lines themselves are only kept in the log file
+    private transient List<Consumer<String>> outputListeners = new CopyOnWriteArrayList<>();
+    private transient SimpleDoubleProperty cpuUsage = new SimpleDoubleProperty(-1);
+    private transient SimpleLongProperty residentMemory = new SimpleLongProperty(-1);
+    private transient volatile BotLogWriter logWriter;
+    private transient volatile CompletableFuture<RunOutcome> runFinished;
+    private transient volatile CommandTemplate commandTemplate;
+    private transient AtomicInteger commandRevision;
+    private transient InvalidationListener commandInvalidator;
+    private transient Set<Observable> watchedParameterObservables;
 
     public Configuration(final RunescapeAccount runescapeAccount, final ObservableList<Script> scripts) {
+        this(runescapeAccount, scripts, Paths.get(Settings.LOGS_DIR, UUID.randomUUID().toString()).toString());
+    }
+
+    // For a configuration loaded from settings, which keeps the log file it had
+    public Configuration(final RunescapeAccount runescapeAccount, final ObservableList<Script> scripts, final String logFileName) {
         this.runescapeAccount = new SimpleObjectProperty<>(runescapeAccount);
         this.scripts = new SimpleListProperty<>(scripts);
         this.proxy = new SimpleObjectProperty<>();
-        logFileName = Paths.get(Settings.LOGS_DIR, UUID.randomUUID().toString()).toString();
+        this.logFileName = logFileName;
+        watchCommandInputs();
     }
 
     private void writeObject(ObjectOutputStream stream) throws IOException {
@@ -72,7 +125,7 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         stream.writeInt(getDebugPort());
         stream.writeBoolean(isLowCpuMode());
         stream.writeBoolean(isLowResourceMode());
-        stream.writeObject(new ArrayList<>(getWorlds()));
+        stream.writeObject(getWorlds());
         stream.writeBoolean(isReflection());
         stream.writeBoolean(isNoRandoms());
         stream.writeBoolean(isNoInterface());
@@ -85,6 +138,9 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         stream.writeBoolean(isLaunchGame());
         stream.writeBoolean(isCloseClient());
         stream.writeObject(logFileName);
+        stream.writeObject(getJvmProfile());
+        stream.writeBoolean(isRestartOnCrash());
+        stream.writeObject(getWorldRule());
     }
 
     private void readObject(ObjectInputStream stream) throws ClassNotFoundException, IOException {
@@ -111,10 +167,12 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         if (worldObj instanceof WorldType) {
             stream.readInt(); // world num
             stream.readBoolean(); // randomize world
-            worlds = new SimpleListProperty<>(FXCollections.observableArrayList(World.getWorlds()));
+            worlds = new SimpleObjectProperty<>(WorldSelection.of(World.getWorlds()));
+        } else if (worldObj instanceof WorldSelection) {
+            worlds = new SimpleObjectProperty<>((WorldSelection) worldObj);
         } else {
-            List<World> selectedWorlds = (List<World>) worldObj;
-            worlds = new SimpleListProperty<>(FXCollections.observableArrayList(selectedWorlds));
+            // Configurations saved before selections were interned hold a list of their own
+            worlds = new SimpleObjectProperty<>(WorldSelection.of((List<World>) worldObj));
         }
 
         try {
@@ -189,11 +247,51 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         } catch (Exception e) {
             logFileName = Paths.get(Settings.LOGS_DIR, UUID.randomUUID().toString()).toString();
         }
+        try {
+            jvmProfile = new SimpleStringProperty((String) stream.readObject());
+        } catch (Exception e) {
+            System.out.println("Config does not contain new jvmProfile option, skipping");
+            jvmProfile = new SimpleStringProperty(JVMProfile.DEFAULT_PROFILE_NAME);
+        }
+        try {
+            restartOnCrash = new SimpleBooleanProperty(stream.readBoolean());
+        } catch (Exception e) {
+            System.out.println("Config does not contain new restartOnCrash option, skipping");
+            restartOnCrash = new SimpleBooleanProperty();
+        }
+        try {
+            worldRule = new SimpleObjectProperty<>((WorldRule) stream.readObject());
+        } catch (Exception e) {
+            System.out.println("Config does not contain new worldRule option, skipping");
+            worldRule = new SimpleObjectProperty<>();
+        }
         isRunning = new SimpleBooleanProperty();
+        processID = -1;
+        clientPIDs = Collections.emptyList();
+        outputListeners = new CopyOnWriteArrayList<>();
+        cpuUsage = new SimpleDoubleProperty(-1);
+        residentMemory = new SimpleLongProperty(-1);
+        watchCommandInputs();
     }
 
+    // For display, the debug port and world are only chosen when a script is actually started
     @Override
     public String[] toParameter() {
+        List<String> parameter = getCommandTemplate().getOptions(LEASED_DEBUG_PORT_PLACEHOLDER, getDisplayWorldParameter());
+        return parameter.toArray(new String[parameter.size()]);
+    }
+
+    private CommandTemplate getCommandTemplate() {
+        CommandTemplate template = commandTemplate;
+        int revision = commandRevision.get();
+        if (template == null || template.getRevision() != revision) {
+            template = buildCommandTemplate(revision);
+            commandTemplate = template;
+        }
+        return template;
+    }
+
+    private CommandTemplate buildCommandTemplate(final int revision) {
 
         List<String> parameter = new ArrayList<>();
 
@@ -215,10 +313,11 @@ public final class Configuration implements BotParameter, Copyable<Configuration
             Collections.addAll(parameter, "-data", "1");
         }
 
+        int debugPortIndex = -1;
         if (debugMode.get() && debugPort.get() != -1) {
             Collections.addAll(parameter, "-debug", String.valueOf(debugPort.get()));
         } else {
-            getAvailablePort().ifPresent(integer -> Collections.addAll(parameter, "-debug", String.valueOf(integer)));
+            debugPortIndex = parameter.size();
         }
 
         List<String> allowParams = new ArrayList<>();
@@ -259,19 +358,57 @@ public final class Configuration implements BotParameter, Copyable<Configuration
             parameter.add("-launchgame");
         }
 
-        World world = worlds.get(new Random().nextInt(worlds.size()));
-        Collections.addAll(parameter, world.toParameter());
+        List<List<String>> scriptParameters = new ArrayList<>();
+        for (final Script script : scripts.get()) {
+            scriptParameters.add(Arrays.asList(script.toParameter()));
+        }
 
-        return parameter.toArray(new String[parameter.size()]);
+        return new CommandTemplate(revision, parameter, debugPortIndex, scriptParameters);
     }
 
-    private Optional<Integer> getAvailablePort() {
-        try (ServerSocket serverSocket = new ServerSocket(0)) {
-            return Optional.of(serverSocket.getLocalPort());
-        } catch (IOException e) {
-            e.printStackTrace();
+    private String[] getDisplayWorldParameter() {
+        WorldSelection selection = getEffectiveWorlds();
+        if (selection.isEmpty()) {
+            return new String[0];
+        }
+        if (selection.size() == 1) {
+            return selection.getWorlds().get(0).toParameter();
+        }
+        return new String[]{"-world", RANDOM_WORLD_PLACEHOLDER};
+    }
+
+    // Listens to every property the command template is built from, including those of the account, proxy and scripts
+    private void watchCommandInputs() {
+        commandRevision = new AtomicInteger();
+        commandInvalidator = observable -> commandRevision.incrementAndGet();
+        watchedParameterObservables = Collections.newSetFromMap(new WeakHashMap<>());
+
+        Observable[] commandInputs = {runescapeAccount, scripts, proxy, memoryAllocation, collectData, debugMode, debugPort,
+                lowCpuMode, lowResourceMode, dismissRandoms, reflection, noRandoms, noInterface, noRender, newMouse,
+                enableBreaks, stopAfterBreak, mirrorMode, launchGame};
+        for (final Observable commandInput : commandInputs) {
+            commandInput.addListener(commandInvalidator);
+        }
+
+        runescapeAccount.addListener(observable -> watchParameter(runescapeAccount.get()));
+        proxy.addListener(observable -> watchParameter(proxy.get()));
+        scripts.addListener((ListChangeListener<Script>) change -> scripts.forEach(this::watchParameter));
+
+        watchParameter(runescapeAccount.get());
+        watchParameter(proxy.get());
+        scripts.forEach(this::watchParameter);
+    }
+
+    // Accounts, proxies and scripts are shared between configurations, so they only hold on to the listener weakly
+    private void watchParameter(final BotParameter parameter) {
+        if (parameter == null) {
+            return;
+        }
+        for (final Observable observable : parameter.getParameterObservables()) {
+            if (watchedParameterObservables.add(observable)) {
+                observable.addListener(new WeakInvalidationListener(commandInvalidator));
+            }
         }
-        return Optional.empty();
     }
 
     @Override
@@ -299,184 +436,403 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         configurationCopy.setMirrorMode(isMirrorMode());
         configurationCopy.setLaunchGame(isLaunchGame());
         configurationCopy.setCloseClient(isCloseClient());
+        configurationCopy.setJvmProfile(getJvmProfile());
+        configurationCopy.setRestartOnCrash(isRestartOnCrash());
+        configurationCopy.setWorldRule(getWorldRule());
         return configurationCopy;
     }
 
-    public void run() throws IOException {
+    public static void setRunErrorHandler(final Consumer<Exception> errorHandler) {
+        runErrorHandler = errorHandler;
+    }
+
+    public CompletableFuture<Void> run() throws IOException {
+
+        final CompletableFuture<RunOutcome> finished = new CompletableFuture<>();
+        // A second run would share the run state, port leases and log writer of the one in progress
+        synchronized (this) {
+            if (runFinished != null && !runFinished.isDone()) {
+                throw new IllegalStateException(runescapeAccount.get().getUsername() + " is already running");
+            }
+            FleetMetrics.recordLaunch(runFinished != null);
+            runFinished = finished;
+        }
 
         File logFile = new File(logFileName);
 
-        if (logFile.exists()) {
-            logFile.delete();
+        try {
+            // Keep the output of the previous run as an archived segment instead of truncating it
+            LogArchiver.archive(logFile);
+
+            if (!logFile.exists() && !logFile.createNewFile()) {
+                throw new IOException("Could not create log file " + logFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            finished.complete(RunOutcome.FAILED_TO_START);
+            throw e;
         }
 
-        if (!logFile.exists() && !logFile.createNewFile()) {
-            throw new IllegalStateException("Could not create log file");
+        BotLogWriter botLogWriter;
+        try {
+            botLogWriter = new BotLogWriter(runescapeAccount.get().getUsername(), logFile);
+        } catch (IOException e) {
+            finished.complete(RunOutcome.FAILED_TO_START);
+            throw e;
         }
 
-        Thread runThread = new Thread(() -> {
+        RunState runState;
+        try {
+            CommandTemplate commandTemplate = getCommandTemplate();
+            IntToDoubleFunction worldPenalty = getWorldPenalty();
+            // Taken last, the pool is held from here until finishRun
+            runState = new RunState(commandTemplate, getWorldPool(), worldPenalty, botLogWriter, finished);
+        } catch (RuntimeException e) {
+            botLogWriter.close();
+            finished.complete(RunOutcome.FAILED_TO_START);
+            throw e;
+        }
+        logWriter = runState.logWriter;
+        runState.logEventListener = (event, line) -> onLogEvent(event, runState);
+        startNextCommand(runState);
+        return runState.loaded;
+    }
 
-            try (BufferedWriter br = new BufferedWriter(new FileWriter(logFile))) {
+    // Each script in the chain is started once the process tree of the previous one has exited.
+    // Output is drained by the shared OutputPump, so a running configuration does not own a thread.
+    private void startNextCommand(final RunState runState) {
+        if (stopRequested || runState.aborted || runState.nextScript >= runState.commandTemplate.getScriptCount()) {
+            finishRun(runState);
+            return;
+        }
 
-                for (final List<String> command : getCommands()) {
+        // Leased for as long as the process tree of this script lives, a port chosen in debug mode is used as is
+        final PortAllocator.Lease debugPortLease = debugMode.get() && debugPort.get() != -1 ? null : PortAllocator.lease().orElse(null);
+        // Held the same way, so the next bot started sees this one on its world
+        final WorldAssigner.Assignment worldAssignment = runState.worldPool.assign(runState.worldPenalty).orElse(null);
 
-                    final ProcessBuilder processBuilder = new ProcessBuilder(command);
-                    processBuilder.redirectErrorStream(true);
-                    final Process process = processBuilder.start();
+        final Process process;
+        try {
+            String leasedDebugPort = debugPortLease != null ? String.valueOf(debugPortLease.getPort()) : null;
+            String[] worldParameter = worldAssignment != null ? worldAssignment.getWorld().toParameter() : new String[0];
+            List<String> command = getCommand(runState.commandTemplate, runState.nextScript++, leasedDebugPort, worldParameter, true);
+            runState.jvmOptions = new ArrayList<>(command.subList(1, command.indexOf("-jar")));
+            final ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            process = ProcessTree.start(processBuilder);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            releaseDebugPort(debugPortLease);
+            releaseWorld(worldAssignment);
+            runState.outcome = RunOutcome.FAILED_TO_START;
+            finishRun(runState);
+            return;
+        }
 
-                    setRunning(true);
+        this.process = process;
+        processID = ProcessTree.getPID(process);
+        clientPIDs = Collections.emptyList();
+        runState.ending = false;
+        runState.processStartTime = System.nanoTime();
 
-                    List<Integer> javaPIDs = getJavaPIDs();
+        setRunning(true);
 
-                    processID = -1;
+        runState.clientOutlivedLauncher = false;
+        OutputPump.register(process.getInputStream(), onProcessTreeExit(process, Collections.emptyList(), runState), new OutputPump.LineSink() {
+            @Override
+            public void onLine(final String line) {
+                onOutputLine(line, runState);
+            }
 
-                    try (final InputStream stdout = process.getInputStream();
-                         final InputStreamReader inputStreamReader = new InputStreamReader(stdout);
-                         final BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-
-                        String outputLine;
-                        while ((outputLine = bufferedReader.readLine()) != null) {
-
-                            br.write(outputLine + System.lineSeparator());
-                            br.flush();
-
-                            outputLine = outputLine.trim();
-
-                            System.out.println(outputLine);
-
-                            if (outputLine.toLowerCase().contains("client is out of date")) {
-                                Platform.runLater(() -> new ExceptionDialog(new ClientOutOfDateException()).show());
-                                setRunning(false);
-                                return;
-                            } else if (outputLine.toLowerCase().contains("update web walking")) {
-                                Platform.runLater(() -> new ExceptionDialog(new MissingWebWalkDataException()).show());
-                                setRunning(false);
-                                return;
-                            } else if (outputLine.toLowerCase().contains("invalid username or password")) {
-                                Platform.runLater(() -> new ExceptionDialog(new IncorrectLoginException()).show());
-                                setRunning(false);
-                                return;
-                            } else if (outputLine.contains("Successfully loaded OSBot")) {
-                                List<Integer> newJavaPIDs = getJavaPIDs();
-                                newJavaPIDs.removeAll(javaPIDs);
-
-                                if (newJavaPIDs.size() == 1) {
-                                    processID = newJavaPIDs.get(0);
-                                }
-                            } else if (isCloseClient() && (outputLine.contains("Bot exited") || (outputLine.contains("Script") && outputLine.endsWith("has exited!")))) {
-                                break;
-                            }
-                        }
+            @Override
+            public void onClose() {
+                // The stream closes once the processes have exited, so the launcher's exit status is known here
+                if (!runState.ending && !stopRequested && isCrash(process.exitValue(), runState.clientOutlivedLauncher)) {
+                    FleetMetrics.recordCrash();
+                    runState.outcome = RunOutcome.CRASHED;
+                    // The rest of the chain is not started, a restart begins again from the first script
+                    if (isRestartOnCrash()) {
+                        runState.aborted = true;
                     }
+                }
 
-                    if (processID != -1) {
-                        killProcess(processID);
-                        processID = -1;
-                        Thread.sleep(1000);
-                    }
+                try {
+                    runState.logWriter.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
 
+                // Make sure no client JVM outlives its script before moving on to the next one
+                ProcessTree.terminate(process, clientPIDs).whenComplete((result, throwable) -> {
+                    // The run moves on either way, a process that survives being killed is beyond our reach
+                    if (throwable != null) {
+                        System.err.println(runescapeAccount.get().getUsername() + ": " + throwable.getMessage());
+                    }
+                    Configuration.this.process = null;
+                    processID = -1;
+                    clientPIDs = Collections.emptyList();
+                    releaseDebugPort(debugPortLease);
+                    releaseWorld(worldAssignment);
                     setRunning(false);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                    startNextCommand(runState);
+                });
             }
         });
-        runThread.start();
-    }
 
-    public List<List<String>> getCommands() {
-
-        List<List<String>> commands = new ArrayList<>();
+        // A stop that came while the process was being started found nothing to end yet
+        if (stopRequested) {
+            endCurrentProcess(runState);
+        }
+    }
 
-        for (final Script script : scripts.get()) {
-            List<String> command = new ArrayList<>();
+    private void onOutputLine(final String outputLine, final RunState runState) {
+        // Written and published together, so subscribers know exactly which lines are already in the log file
+        synchronized (outputListeners) {
+            runState.logWriter.write(outputLine);
+            for (final Consumer<String> outputListener : outputListeners) {
+                outputListener.accept(outputLine);
+            }
+        }
+        FleetMetrics.recordLogLine();
 
-            Collections.addAll(command, "java", "-jar");
-            Collections.addAll(command, Paths.get(Settings.OSBOT_CLIENT_DIR, OSBotClient.getLatestLocalVersion().get()).toString());
-            Collections.addAll(command, "-autologin");
-            Collections.addAll(command, this.toParameter());
-            Collections.addAll(command, script.toParameter());
+        LogClassifier.getDefault().classify(outputLine, runState.logEventListener);
+    }
 
-            commands.add(command);
+    private void onLogEvent(final LogEvent event, final RunState runState) {
+        switch (event) {
+            case CLIENT_OUT_OF_DATE:
+                abortRun(runState, RunOutcome.CLIENT_OUT_OF_DATE, new ClientOutOfDateException());
+                break;
+            case MISSING_WEB_WALK_DATA:
+                abortRun(runState, RunOutcome.MISSING_WEB_WALK_DATA, new MissingWebWalkDataException());
+                break;
+            case INVALID_LOGIN:
+                abortRun(runState, RunOutcome.INVALID_LOGIN, new IncorrectLoginException());
+                break;
+            case CLIENT_LOADED:
+                // The launcher may hand over to a child JVM, so track everything below our own process
+                clientPIDs = ProcessTree.getDescendantPIDs(processID);
+                checkClientJvmOptions(clientPIDs, runState.jvmOptions);
+                if (runState.processStartTime != 0) {
+                    FleetMetrics.recordLaunchLatency(System.nanoTime() - runState.processStartTime);
+                    runState.processStartTime = 0;
+                }
+                runState.loaded.complete(null);
+                break;
+            case BOT_EXITED:
+            case SCRIPT_EXITED:
+                if (isCloseClient()) {
+                    endCurrentProcess(runState);
+                }
+                break;
+            case STOP_PATTERN_MATCHED:
+                endCurrentProcess(runState);
+                break;
         }
-
-        return commands;
     }
 
-    public void stop() {
-        if (!isRunning()) {
+    // The options are given to the JVM started with the OSBot jar. If the launcher starts the client in a JVM of its own,
+    // that JVM does not get them. Only noticed where command lines can be read from /proc.
+    private void checkClientJvmOptions(final List<Integer> clientPIDs, final List<String> jvmOptions) {
+        if (jvmOptions.isEmpty()) {
             return;
         }
-        if (processID == -1) {
-            return;
+        for (final int clientPID : clientPIDs) {
+            List<String> commandLine = ProcessTree.getCommandLine(clientPID);
+            if (!commandLine.isEmpty() && new File(commandLine.get(0)).getName().matches("javaw?(\\.exe)?")
+                    && !commandLine.containsAll(jvmOptions)) {
+                System.out.printf("%s: the OSBot client runs in process %d without some of the JVM options %s%n",
+                        runescapeAccount.get().getUsername(), clientPID, jvmOptions);
+            }
         }
-        killProcess(processID);
     }
 
-    private List<Integer> getJavaPIDs() {
-        if (System.getProperty("os.name").startsWith("Windows")) {
-            return getJavaPIDsWindows();
-        } else {
-            return getJavaPIDsLinux();
+    private void abortRun(final RunState runState, final RunOutcome outcome, final Exception exception) {
+        runErrorHandler.accept(exception);
+        runState.outcome = outcome;
+        runState.aborted = true;
+        endCurrentProcess(runState);
+    }
+
+    private void endCurrentProcess(final RunState runState) {
+        if (!runState.ending) {
+            runState.ending = true;
+            ProcessTree.terminate(process, clientPIDs);
         }
     }
 
-    private List<Integer> getJavaPIDsWindows() {
-        List<Integer> pids = new ArrayList<>();
+    private void finishRun(final RunState runState) {
+        runState.worldPool.release();
         try {
-            Process process = Runtime.getRuntime().exec("tasklist /FI \"IMAGENAME eq java.exe\" /NH");
-            try (final InputStream stdout = process.getInputStream();
-                 final InputStreamReader inputStreamReader = new InputStreamReader(stdout);
-                 final BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                String processInfo;
-                while ((processInfo = bufferedReader.readLine()) != null) {
-                    processInfo = processInfo.trim();
-                    String[] values = processInfo.split("\\s+");
-                    if (values.length >= 2) {
-                        pids.add(Integer.parseInt(values[1]));
-                    }
-                }
+            synchronized (outputListeners) {
+                logWriter = null;
             }
+            runState.logWriter.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return pids;
+        setRunning(false);
+        runState.loaded.complete(null);
+
+        RunOutcome outcome = runState.outcome;
+        if (stopRequested) {
+            outcome = RunOutcome.STOPPED;
+        } else if (outcome == null) {
+            outcome = RunOutcome.COMPLETED;
+        }
+        runState.finished.complete(outcome);
     }
 
-    private List<Integer> getJavaPIDsLinux() {
-        List<Integer> pids = new ArrayList<>();
-        try {
-            Process process = Runtime.getRuntime().exec("ps aux | grep java");
-            try (final InputStream stdout = process.getInputStream();
-                 final InputStreamReader inputStreamReader = new InputStreamReader(stdout);
-                 final BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                String processInfo;
-                while ((processInfo = bufferedReader.readLine()) != null) {
-                    processInfo = processInfo.trim();
-                    String[] values = processInfo.split("\\s+");
-                    if (values.length > 0) {
-                        pids.add(Integer.parseInt(values[0]));
-                    }
-                }
+    // Completes once the launcher and the client JVMs found below it have exited. The client JVMs are only known once
+    // the client has loaded, so they are looked at again after the processes watched so far have exited.
+    private CompletableFuture<Void> onProcessTreeExit(final Process process, final List<Integer> watchedPIDs, final RunState runState) {
+        return ProcessTree.onTreeExit(process, watchedPIDs).thenCompose(exited -> {
+            List<Integer> clientPIDs = this.clientPIDs;
+            if (watchedPIDs.containsAll(clientPIDs)) {
+                return CompletableFuture.completedFuture(null);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (process != null && clientPIDs.stream().anyMatch(ProcessTree::isAlive)) {
+                runState.clientOutlivedLauncher = true;
+            }
+            return onProcessTreeExit(null, clientPIDs, runState);
+        });
+    }
+
+    // Only the exit status of the launcher can be read. Exiting with 0, or on SIGHUP, SIGINT or SIGTERM, which Java reports
+    // as 128 plus the signal, the client was closed on purpose: by the user, the script or the system shutting down.
+    // Any other status is a crash, a SIGKILL from the OOM killer for example. When the client ran in a JVM of its own that
+    // outlived the launcher, how it ended is not known and it counts as a crash, as a restart is the safer guess.
+    private static boolean isCrash(final int exitValue, final boolean clientOutlivedLauncher) {
+        if (clientOutlivedLauncher) {
+            return true;
         }
-        return pids;
+        return exitValue != 0 && exitValue != 128 + 1 && exitValue != 128 + 2 && exitValue != 128 + 15;
     }
 
-    private void killProcess(final int PID) {
-        try {
-            if (System.getProperty("os.name").startsWith("Windows")) {
-                Runtime.getRuntime().exec("Taskkill /PID " + PID + " /F");
+    // Lines output before the subscription are in the returned index, later lines are pushed to the listener
+    public LogLineIndex subscribeToLogFile(final Consumer<String> outputListener) throws IOException {
+        synchronized (outputListeners) {
+            BotLogWriter logWriter = this.logWriter;
+            LogLineIndex logLineIndex;
+            if (logWriter != null) {
+                FileChannel channel = logWriter.openForReading();
+                logLineIndex = LogLineIndex.open(new File(logFileName), channel, channel.size());
             } else {
-                Runtime.getRuntime().exec("kill -9 " + PID);
+                logLineIndex = LogLineIndex.open(new File(logFileName));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            outputListeners.add(outputListener);
+            return logLineIndex;
+        }
+    }
+
+    public void unsubscribeFromOutput(final Consumer<String> outputListener) {
+        outputListeners.remove(outputListener);
+    }
+
+    private List<String> getJvmOptions() {
+        Optional<JVMProfile> profile = JVMProfile.getProfile(getJvmProfile());
+        if (!profile.isPresent()) {
+            System.out.println("JVM profile " + getJvmProfile() + " does not exist, using the JVM defaults");
+            return Collections.emptyList();
+        }
+        return profile.get().getOptions();
+    }
+
+    // For display, the debug port is only leased when a script is actually started
+    public List<List<String>> getCommands() {
+
+        List<List<String>> commands = new ArrayList<>();
+
+        CommandTemplate template = getCommandTemplate();
+        String[] worldParameter = getDisplayWorldParameter();
+        for (int scriptIndex = 0; scriptIndex < template.getScriptCount(); scriptIndex++) {
+            commands.add(getCommand(template, scriptIndex, LEASED_DEBUG_PORT_PLACEHOLDER, worldParameter, false));
+        }
+
+        return commands;
+    }
+
+    // The client jar, JVM profile and class data archive can change between launches, so only this prefix is not cached.
+    // Only a command that is about to be started queues a class data archive build, showing the command has no effect.
+    private List<String> getCommand(final CommandTemplate template, final int scriptIndex, final String leasedDebugPort,
+                                    final String[] worldParameter, final boolean starting) {
+        List<String> command = new ArrayList<>();
+
+        File clientJar = Paths.get(Settings.OSBOT_CLIENT_DIR, OSBotClient.getLatestLocalVersion().get()).toFile();
+        if (starting) {
+            ClientClassDataArchive.buildIfMissing(clientJar);
+        }
+
+        Collections.addAll(command, "java");
+        command.addAll(getJvmOptions());
+        command.addAll(ClientClassDataArchive.getJvmArguments(clientJar));
+        Collections.addAll(command, "-jar", clientJar.toString());
+        Collections.addAll(command, "-autologin");
+        command.addAll(template.getOptions(leasedDebugPort, worldParameter));
+        command.addAll(template.getScriptParameters(scriptIndex));
+
+        return command;
+    }
+
+    private static void releaseDebugPort(final PortAllocator.Lease debugPortLease) {
+        if (debugPortLease != null) {
+            debugPortLease.release();
+        }
+    }
+
+    private static void releaseWorld(final WorldAssigner.Assignment worldAssignment) {
+        if (worldAssignment != null) {
+            worldAssignment.release();
+        }
+    }
+
+    private WorldAssigner.Pool getWorldPool() {
+        return WorldAssigner.getPool(getEffectiveWorlds());
+    }
+
+    // The round trip from behind this configuration's proxy counts towards a world's load.
+    // Worlds without a current measurement are probed in the background, for the scripts and runs that follow.
+    private IntToDoubleFunction getWorldPenalty() {
+        LatencyProbe latencyProbe = LatencyProbe.getInstance();
+        if (latencyProbe == null) {
+            return world -> 0;
         }
+        Proxy runProxy = getProxy();
+        latencyProbe.probeAll(runProxy, getEffectiveWorlds().getWorlds().stream().map(World::getNumber).collect(Collectors.toList()));
+        return latencyProbe.getPenalty(runProxy, LatencyProbe.getWeight());
+    }
+
+    // Resolved again whenever the world list has changed, so a rule picks up new worlds by itself
+    public WorldSelection getEffectiveWorlds() {
+        WorldRule rule = worldRule.get();
+        return rule != null ? rule.resolve() : worlds.get();
+    }
+
+    // Called when the configuration is taken off the launch queue, a stop from then on applies to the run about to start
+    public void clearStopRequest() {
+        stopRequested = false;
+    }
+
+    public CompletableFuture<Void> stop() {
+        // Also set between two scripts, so the next one in the chain is not started
+        stopRequested = true;
+        if (!isRunning()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return ProcessTree.terminate(process, clientPIDs);
+    }
+
+    // Completes with the outcome once every script of the current run has exited, null if the configuration was never run
+    public CompletableFuture<RunOutcome> getRunFinished() {
+        return runFinished;
+    }
+
+    public List<Integer> getProcessIDs() {
+        List<Integer> processIDs = new ArrayList<>();
+        if (processID != -1) {
+            processIDs.add(processID);
+        }
+        processIDs.addAll(clientPIDs);
+        return processIDs;
     }
 
     public RunescapeAccount getRunescapeAccount() {
@@ -583,12 +939,16 @@ public final class Configuration implements BotParameter, Copyable<Configuration
         this.noRender.set(noRender);
     }
 
-    public ObservableList<World> getWorlds() {
+    public WorldSelection getWorlds() {
         return worlds.get();
     }
 
-    public void setWorlds(final List<World> worlds) {
-        this.worlds.setAll(worlds);
+    public void setWorlds(final WorldSelection worlds) {
+        this.worlds.set(worlds);
+    }
+
+    public SimpleObjectProperty<WorldSelection> worldsProperty() {
+        return worlds;
     }
 
     public boolean isRunning() {
@@ -662,4 +1022,83 @@ public final class Configuration implements BotParameter, Copyable<Configuration
     public void setCloseClient(boolean closeClient) {
         this.closeClient.set(closeClient);
     }
+
+    // Percentage of one core used by the whole process tree, -1 when not running
+    public SimpleDoubleProperty cpuUsageProperty() {
+        return cpuUsage;
+    }
+
+    public double getCpuUsage() {
+        return cpuUsage.get();
+    }
+
+    // Resident memory of the whole process tree in bytes, -1 when not running
+    public SimpleLongProperty residentMemoryProperty() {
+        return residentMemory;
+    }
+
+    public long getResidentMemory() {
+        return residentMemory.get();
+    }
+
+    public void setResourceUsage(final double cpuUsage, final long residentMemory) {
+        this.cpuUsage.set(cpuUsage);
+        this.residentMemory.set(residentMemory);
+    }
+
+    public boolean isRestartOnCrash() {
+        return restartOnCrash.get();
+    }
+
+    public void setRestartOnCrash(final boolean restartOnCrash) {
+        this.restartOnCrash.set(restartOnCrash);
+    }
+
+    // Null when the fixed world selection is used
+    public WorldRule getWorldRule() {
+        return worldRule.get();
+    }
+
+    public void setWorldRule(final WorldRule worldRule) {
+        this.worldRule.set(worldRule);
+    }
+
+    public SimpleObjectProperty<WorldRule> worldRuleProperty() {
+        return worldRule;
+    }
+
+    public String getJvmProfile() {
+        return jvmProfile.get();
+    }
+
+    public void setJvmProfile(String jvmProfile) {
+        this.jvmProfile.set(jvmProfile);
+    }
+
+    private static final class RunState {
+        private final CommandTemplate commandTemplate;
+        private final WorldAssigner.Pool worldPool;
+        private final IntToDoubleFunction worldPenalty;
+        private final BotLogWriter logWriter;
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private final CompletableFuture<RunOutcome> finished;
+        private LogClassifier.Listener logEventListener;
+        private volatile boolean aborted;
+        private volatile boolean ending;
+        private volatile boolean clientOutlivedLauncher;
+        private volatile long processStartTime;
+        private volatile RunOutcome outcome;
+        // The JVM profile and class data archive options the current script was started with
+        private volatile List<String> jvmOptions = Collections.emptyList();
+        private int nextScript;
+
+        private RunState(final CommandTemplate commandTemplate, final WorldAssigner.Pool worldPool, final IntToDoubleFunction worldPenalty,
+                         final BotLogWriter logWriter, final CompletableFuture<RunOutcome> finished) {
+            this.commandTemplate = commandTemplate;
+            this.worldPool = worldPool;
+            this.worldPenalty = worldPenalty;
+            this.logWriter = logWriter;
+            this.finished = finished;
+        }
+    }
 }
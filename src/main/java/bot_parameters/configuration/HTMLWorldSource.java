@@ -0,0 +1,377 @@
+package bot_parameters.configuration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the server list page as a stream of tags and text, without building a document.
+// Only the rows of the server list are looked at: the world link's id holds the number, the type cell says whether the
+// world is members, the cell after it holds the activity, the country cell the region and the cell reading "N players"
+// the population.
+public final class HTMLWorldSource implements WorldSource {
+
+    public static final String DEFAULT_URL = "http://oldschool.runescape.com/slu";
+
+    private static final String ROW_CLASS = "server-list__row";
+    private static final String TYPE_CELL_CLASS = "server-list__row-cell--type";
+    private static final String COUNTRY_CELL_CLASS = "server-list__row-cell--country";
+    private static final String WORLD_ID_PREFIX = "slu-world-";
+    private static final String PLAYERS_SUFFIX = " players";
+
+    private final String url;
+
+    public HTMLWorldSource(final String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getURL() {
+        return url;
+    }
+
+    @Override
+    public List<World> read(final InputStream inputStream) throws IOException {
+        return new Parser(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).parse();
+    }
+
+    private static final class Parser {
+        private final Reader reader;
+        // Read through a buffer of its own, a character at a time from a Reader is a synchronized call each
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private final StringBuilder tag = new StringBuilder(128);
+        private final StringBuilder cellText = new StringBuilder(64);
+        private final List<World> worlds = new ArrayList<>();
+
+        private boolean inRow;
+        private boolean inCell;
+        private boolean typeCell;
+        private boolean countryCell;
+        private int cellIndex;
+        private int typeCellIndex;
+        private int number;
+        private boolean members;
+        private String detail;
+        private int population;
+        private WorldAttribute region;
+
+        private Parser(final Reader reader) {
+            this.reader = reader;
+        }
+
+        private List<World> parse() throws IOException {
+            int c;
+            while ((c = next()) != -1) {
+                if (c == '<') {
+                    readTag();
+                } else if (inCell) {
+                    if (c == '&') {
+                        readEntity();
+                    } else {
+                        appendText((char) c);
+                    }
+                }
+            }
+            return worlds;
+        }
+
+        private int next() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        // Reads up to the closing '>', quoted attribute values may contain one
+        private void readTag() throws IOException {
+            tag.setLength(0);
+            char quote = 0;
+            int c;
+            while ((c = next()) != -1) {
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = (char) c;
+                } else if (c == '>') {
+                    break;
+                }
+                tag.append((char) c);
+
+                if (tag.length() == 3 && tag.charAt(0) == '!' && tag.charAt(1) == '-' && tag.charAt(2) == '-') {
+                    skipPast("-->");
+                    return;
+                }
+            }
+
+            boolean closing = tag.length() > 0 && tag.charAt(0) == '/';
+            int nameStart = closing ? 1 : 0;
+            int nameEnd = nameStart;
+            while (nameEnd < tag.length() && !Character.isWhitespace(tag.charAt(nameEnd)) && tag.charAt(nameEnd) != '/') {
+                nameEnd++;
+            }
+
+            if (isName("tr", nameStart, nameEnd)) {
+                if (closing) {
+                    endRow();
+                } else if (hasClass(ROW_CLASS)) {
+                    startRow();
+                }
+            } else if (!inRow) {
+                if (!closing && (isName("script", nameStart, nameEnd) || isName("style", nameStart, nameEnd))) {
+                    skipPast("</" + tag.substring(nameStart, nameEnd));
+                }
+            } else if (isName("td", nameStart, nameEnd)) {
+                if (closing) {
+                    endCell();
+                } else {
+                    endCell();
+                    cellIndex++;
+                    inCell = true;
+                    typeCell = hasClass(TYPE_CELL_CLASS);
+                    countryCell = !typeCell && hasClass(COUNTRY_CELL_CLASS);
+                    cellText.setLength(0);
+                }
+            } else if (!closing && isName("a", nameStart, nameEnd)) {
+                String id = getAttribute("id");
+                if (id != null && id.startsWith(WORLD_ID_PREFIX)) {
+                    number = parseNumber(id, WORLD_ID_PREFIX.length(), id.length());
+                }
+            } else if (inCell && !closing && isName("br", nameStart, nameEnd)) {
+                appendText(' ');
+            }
+        }
+
+        private void startRow() {
+            inRow = true;
+            inCell = false;
+            cellIndex = -1;
+            typeCellIndex = -1;
+            number = -1;
+            members = false;
+            detail = "";
+            population = -1;
+            region = null;
+        }
+
+        private void endRow() {
+            if (!inRow) {
+                return;
+            }
+            endCell();
+            inRow = false;
+            if (number > 0 && typeCellIndex != -1) {
+                worlds.add(new World(members ? WorldType.MEMBERS : WorldType.F2P, number, detail, population, region));
+            }
+        }
+
+        private void endCell() {
+            if (!inCell) {
+                return;
+            }
+            inCell = false;
+
+            int length = cellText.length();
+            if (length > 0 && cellText.charAt(length - 1) == ' ') {
+                cellText.setLength(length - 1);
+            }
+
+            if (typeCell) {
+                typeCellIndex = cellIndex;
+                members = contentEquals(cellText, "Members");
+            } else if (countryCell) {
+                region = WorldAttribute.getRegion(cellText.toString());
+            } else if (typeCellIndex != -1 && cellIndex == typeCellIndex + 1) {
+                detail = contentEquals(cellText, "-") ? "" : cellText.toString();
+            } else if (population == -1 && endsWith(cellText, PLAYERS_SUFFIX)) {
+                population = parseNumber(cellText, 0, cellText.length() - PLAYERS_SUFFIX.length());
+            }
+        }
+
+        // Whitespace is collapsed and trimmed, the way the cell reads on the page
+        private void appendText(final char c) {
+            if (Character.isWhitespace(c)) {
+                if (cellText.length() > 0 && cellText.charAt(cellText.length() - 1) != ' ') {
+                    cellText.append(' ');
+                }
+            } else {
+                cellText.append(c);
+            }
+        }
+
+        private void readEntity() throws IOException {
+            StringBuilder entity = new StringBuilder(8);
+            int c = 0;
+            while (entity.length() < 8 && (c = next()) != -1 && c != ';') {
+                if (c == '<') {
+                    cellText.append('&').append(entity);
+                    readTag();
+                    return;
+                }
+                entity.append((char) c);
+            }
+
+            String name = entity.toString();
+            switch (name) {
+                case "amp":
+                    appendText('&');
+                    return;
+                case "lt":
+                    appendText('<');
+                    return;
+                case "gt":
+                    appendText('>');
+                    return;
+                case "quot":
+                    appendText('"');
+                    return;
+                case "apos":
+                case "#39":
+                    appendText('\'');
+                    return;
+                case "nbsp":
+                    appendText(' ');
+                    return;
+            }
+            cellText.append('&').append(name);
+            if (c == ';') {
+                cellText.append(';');
+            }
+        }
+
+        private void skipPast(final String end) throws IOException {
+            int matched = 0;
+            int c;
+            while (matched < end.length() && (c = next()) != -1) {
+                if (Character.toLowerCase(c) == end.charAt(matched)) {
+                    matched++;
+                } else {
+                    matched = Character.toLowerCase(c) == end.charAt(0) ? 1 : 0;
+                }
+            }
+            if (end.charAt(0) == '<') {
+                // The rest of the closing tag
+                while ((c = next()) != -1 && c != '>') {
+                }
+            }
+        }
+
+        private boolean isName(final String name, final int start, final int end) {
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.toLowerCase(tag.charAt(start + i)) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasClass(final String className) {
+            String classes = getAttribute("class");
+            if (classes == null) {
+                return false;
+            }
+            int index = 0;
+            while ((index = classes.indexOf(className, index)) != -1) {
+                int end = index + className.length();
+                if ((index == 0 || Character.isWhitespace(classes.charAt(index - 1)))
+                        && (end == classes.length() || Character.isWhitespace(classes.charAt(end)))) {
+                    return true;
+                }
+                index = end;
+            }
+            return false;
+        }
+
+        private String getAttribute(final String name) {
+            int index = 0;
+            while ((index = indexOfIgnoreCase(tag, name, index)) != -1) {
+                int end = index + name.length();
+                boolean startsName = Character.isWhitespace(tag.charAt(index - 1));
+                while (end < tag.length() && Character.isWhitespace(tag.charAt(end))) {
+                    end++;
+                }
+                if (startsName && end < tag.length() && tag.charAt(end) == '=') {
+                    return readAttributeValue(end + 1);
+                }
+                index += name.length();
+            }
+            return null;
+        }
+
+        private String readAttributeValue(int start) {
+            while (start < tag.length() && Character.isWhitespace(tag.charAt(start))) {
+                start++;
+            }
+            if (start == tag.length()) {
+                return "";
+            }
+            char quote = tag.charAt(start);
+            if (quote == '"' || quote == '\'') {
+                int end = tag.indexOf(String.valueOf(quote), start + 1);
+                return tag.substring(start + 1, end == -1 ? tag.length() : end);
+            }
+            int end = start;
+            while (end < tag.length() && !Character.isWhitespace(tag.charAt(end)) && tag.charAt(end) != '/') {
+                end++;
+            }
+            return tag.substring(start, end);
+        }
+
+        private static int indexOfIgnoreCase(final CharSequence text, final String search, final int from) {
+            for (int i = Math.max(from, 1); i <= text.length() - search.length(); i++) {
+                boolean matches = true;
+                for (int j = 0; j < search.length() && matches; j++) {
+                    matches = Character.toLowerCase(text.charAt(i + j)) == search.charAt(j);
+                }
+                if (matches) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Digits with optional thousands separators, -1 when there are none or anything else is in the way
+        private static int parseNumber(final CharSequence text, final int start, final int end) {
+            int value = 0;
+            boolean digits = false;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits = true;
+                } else if (c != ',' || !digits) {
+                    return -1;
+                }
+            }
+            return digits ? value : -1;
+        }
+
+        private static boolean contentEquals(final CharSequence text, final String value) {
+            return text.length() == value.length() && endsWith(text, value);
+        }
+
+        private static boolean endsWith(final CharSequence text, final String suffix) {
+            int offset = text.length() - suffix.length();
+            if (offset < 0) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length(); i++) {
+                if (text.charAt(offset + i) != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package bot_parameters.configuration;
+
+import settings.Settings;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Named sets of options for the java process a configuration is started with.
+// Profiles are read from jvm_profiles.properties in the config directory, one profile per line:
+//   name = -XX:+UseSerialGC -Xss256k
+public final class JVMProfile {
+
+    public static final String DEFAULT_PROFILE_NAME = "default";
+    public static final String PROFILES_FILE = Paths.get(Settings.CONFIG_DIR, "jvm_profiles.properties").toString();
+
+    private static final Map<String, String> builtInProfiles = new LinkedHashMap<>();
+
+    static {
+        builtInProfiles.put(DEFAULT_PROFILE_NAME, "");
+        // Many low intensity bots on one host, trades peak performance for a small footprint
+        builtInProfiles.put("dense", "-XX:+UseSerialGC -Xss256k -XX:TieredStopAtLevel=1 -XX:CICompilerCount=2 -XX:ReservedCodeCacheSize=32m -XX:MinHeapFreeRatio=10 -XX:MaxHeapFreeRatio=30");
+        // Few demanding bots, trades memory for shorter pauses and faster code
+        builtInProfiles.put("throughput", "-XX:+UseG1GC -XX:+UseStringDeduplication -Xms256m -XX:+ParallelRefProcEnabled");
+    }
+
+    private static Map<String, JVMProfile> profiles;
+    private static long profilesLastModified;
+
+    private final String name;
+    private final List<String> options;
+
+    private JVMProfile(final String name, final List<String> options) {
+        this.name = name;
+        this.options = Collections.unmodifiableList(options);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public static synchronized List<JVMProfile> getProfiles() {
+        return new ArrayList<>(loadProfiles().values());
+    }
+
+    public static synchronized Optional<JVMProfile> getProfile(final String name) {
+        return Optional.ofNullable(loadProfiles().get(name));
+    }
+
+    // Re-read whenever the file changes, so edited profiles apply to the next start without a restart
+    private static Map<String, JVMProfile> loadProfiles() {
+        File profilesFile = new File(PROFILES_FILE);
+
+        if (!profilesFile.exists()) {
+            writeBuiltInProfiles(profilesFile);
+        }
+
+        if (profiles != null && profilesFile.lastModified() == profilesLastModified) {
+            return profiles;
+        }
+
+        Properties properties = new Properties();
+        if (profilesFile.exists()) {
+            try (Reader reader = new BufferedReader(new FileReader(profilesFile))) {
+                properties.load(reader);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        Map<String, JVMProfile> loadedProfiles = new LinkedHashMap<>();
+        builtInProfiles.forEach((name, options) -> loadedProfiles.put(name, parse(name, options)));
+        for (final String name : new TreeSet<>(properties.stringPropertyNames())) {
+            loadedProfiles.put(name, parse(name, properties.getProperty(name)));
+        }
+
+        // The default profile always means the JVM's own defaults
+        loadedProfiles.put(DEFAULT_PROFILE_NAME, parse(DEFAULT_PROFILE_NAME, ""));
+
+        profiles = loadedProfiles;
+        profilesLastModified = profilesFile.lastModified();
+        return profiles;
+    }
+
+    // Written by hand, Properties.store would escape every ':' and '=' in the options
+    private static void writeBuiltInProfiles(final File profilesFile) {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(profilesFile)))) {
+            writer.println("# JVM profiles for bot processes: name = options passed to java");
+            builtInProfiles.forEach((name, options) -> {
+                if (!name.equals(DEFAULT_PROFILE_NAME)) {
+                    writer.println(name + " = " + options);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static JVMProfile parse(final String name, final String options) {
+        List<String> optionList = new ArrayList<>();
+        for (final String option : options.trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                optionList.add(option);
+            }
+        }
+        return new JVMProfile(name, optionList);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,71 @@
+package bot_parameters.configuration;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The original server list parser, builds the whole document before reading the rows.
+// Kept as a fallback in case the page changes in a way the streaming parser does not handle.
+public final class JsoupWorldSource implements WorldSource {
+
+    private static final Pattern POPULATION_PATTERN = Pattern.compile("([\\d,]+) players");
+
+    private final String url;
+
+    public JsoupWorldSource(final String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getURL() {
+        return url;
+    }
+
+    @Override
+    public List<World> read(final InputStream inputStream) throws IOException {
+        List<World> worlds = new ArrayList<>();
+
+        Document doc = Jsoup.parse(inputStream, null, url);
+        Elements servers = doc.select("tr.server-list__row");
+        for (Element server : servers) {
+            Element serverLink = server.selectFirst(".server-list__world-link");
+            String worldIDStr = serverLink.id().replaceAll("slu-world-", "");
+            int worldNum = Integer.parseInt(worldIDStr);
+
+            Element membershipType = server.selectFirst(".server-list__row-cell--type");
+            boolean members = membershipType.html().equals("Members");
+
+            WorldType worldType = members ? WorldType.MEMBERS : WorldType.F2P;
+
+            String worldDetail = membershipType.nextElementSibling().html();
+
+            if (worldDetail.equals("-")) {
+                worldDetail = "";
+            }
+
+            Element country = server.selectFirst(".server-list__row-cell--country");
+            WorldAttribute region = country != null ? WorldAttribute.getRegion(country.text()) : null;
+
+            worlds.add(new World(worldType, worldNum, worldDetail, parsePopulation(server), region));
+        }
+        return worlds;
+    }
+
+    private static int parsePopulation(final Element server) {
+        for (final Element cell : server.select(".server-list__row-cell")) {
+            Matcher matcher = POPULATION_PATTERN.matcher(cell.text());
+            if (matcher.matches()) {
+                return Integer.parseInt(matcher.group(1).replace(",", ""));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,12 @@
+package bot_parameters.configuration;
+
+// How the last run of a configuration ended
+public enum RunOutcome {
+    COMPLETED,
+    STOPPED,
+    CRASHED,
+    FAILED_TO_START,
+    INVALID_LOGIN,
+    CLIENT_OUT_OF_DATE,
+    MISSING_WEB_WALK_DATA
+}
@@ -1,24 +1,17 @@
 package bot_parameters.configuration;
 
 import bot_parameters.interfaces.BotParameter;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
 public class World implements BotParameter, Serializable {
     private static final long serialVersionUID = -9046100616950752889L;
 
-    private static List<World> worlds;
-
     private static final Comparator<World> worldComparator = (w1, w2) -> {
         int typeComparison = w1.getType().compareTo(w2.getType());
 
@@ -32,55 +25,35 @@ public class World implements BotParameter, Serializable {
     private WorldType type;
     private int number;
     private String detail;
+    // Players online when the world list was loaded, -1 when unknown
+    private transient int population = -1;
+    // Null when the world list did not say where the world is
+    private transient WorldAttribute region;
+    // Parsed from the type, detail and region once, rules are matched against these bits
+    private transient int attributes;
 
     public World(final WorldType type, final int number, final String detail) {
+        this(type, number, detail, -1, null);
+    }
+
+    public World(final WorldType type, final int number, final String detail, final int population, final WorldAttribute region) {
         this.type = type;
         this.number = number;
         this.detail = detail;
+        this.population = population;
+        this.region = region;
+        this.attributes = WorldAttribute.getMask(type, detail, region);
     }
 
+    // Served from the world list cache, which refreshes itself in the background once it is stale
     public static List<World> getWorlds() {
-        if (worlds == null) {
-            loadWorlds();
-        }
-        return worlds;
+        return WorldListCache.getWorlds();
     }
 
     public static Comparator<World> getWorldComparator() {
         return worldComparator;
     }
 
-    private static void loadWorlds() {
-        worlds = new ArrayList<>();
-
-        try {
-            Document doc = Jsoup.connect("http://oldschool.runescape.com/slu").get();
-            Elements servers = doc.select("tr.server-list__row");
-            for (Element server : servers) {
-                Element serverLink = server.selectFirst(".server-list__world-link");
-                String worldIDStr = serverLink.id().replaceAll("slu-world-", "");
-                int worldNum = Integer.parseInt(worldIDStr);
-
-                Element membershipType = server.selectFirst(".server-list__row-cell--type");
-                boolean members = membershipType.html().equals("Members");
-
-                WorldType worldType = members ? WorldType.MEMBERS : WorldType.F2P;
-
-                String worldDetail = membershipType.nextElementSibling().html();
-
-                if (worldDetail.equals("-")) {
-                    worldDetail = "";
-                }
-
-                worlds.add(new World(worldType, worldNum, worldDetail));
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        worlds.sort(worldComparator);
-    }
-
     public final WorldType getType() {
         return type;
     }
@@ -93,6 +66,22 @@ public class World implements BotParameter, Serializable {
         return detail;
     }
 
+    public final int getPopulation() {
+        return population;
+    }
+
+    public final WorldAttribute getRegion() {
+        return region;
+    }
+
+    public final int getAttributes() {
+        return attributes;
+    }
+
+    public final boolean hasAttribute(final WorldAttribute attribute) {
+        return (attributes & attribute.getMask()) != 0;
+    }
+
     private void writeObject(ObjectOutputStream stream) throws IOException {
         stream.writeObject(getType());
         stream.writeInt(getNumber());
@@ -103,6 +92,9 @@ public class World implements BotParameter, Serializable {
         type = (WorldType) stream.readObject();
         number = stream.readInt();
         detail = (String) stream.readObject();
+        population = -1;
+        region = null;
+        attributes = WorldAttribute.getMask(type, detail, null);
     }
 
     @Override
@@ -116,6 +108,11 @@ public class World implements BotParameter, Serializable {
         return getType() == otherWorld.getType() && getNumber() == otherWorld.getNumber();
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * getType().ordinal() + getNumber();
+    }
+
     @Override
     public String toString() {
         String worldStr = getType().toString() + " " + getNumber();
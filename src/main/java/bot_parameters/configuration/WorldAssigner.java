@@ -0,0 +1,208 @@
+package bot_parameters.configuration;
+
+import settings.Settings;
+
+import java.util.*;
+import java.util.function.IntToDoubleFunction;
+
+// Spreads the bots of the whole fleet over their worlds, by starting each bot on the least loaded world it may use.
+// Load is the number of the manager's bots on a world, optionally plus a share of the world's player count.
+// Every distinct world selection gets a pool that keeps its worlds ordered by load, so an assignment only takes the
+// first world of a pool and moves it to its new position in each pool containing it.
+// A pool lives while a run holds it, the loads themselves are kept per world and outlive the pools.
+public final class WorldAssigner {
+
+    public static final String POPULATION_WEIGHT_PREFERENCE = "worlds.population_weight";
+
+    // Read once, changing the weight reorders every pool, so it applies from the next start of the manager
+    private static final double POPULATION_WEIGHT = getPopulationWeight();
+
+    // How many of the least loaded worlds a penalty is looked up for. Without the bound every world is looked at when they
+    // are all equally loaded. The cost is that a world with a lower penalty further down the order is only found once the
+    // worlds ahead of it have bots, which with the usual few hundred worlds is a handful of launches.
+    private static final int MAX_PENALTY_CANDIDATES = 32;
+
+    private static final Comparator<WorldLoad> LOAD_ORDER = Comparator
+            .comparingDouble((WorldLoad load) -> load.score)
+            .thenComparingInt(load -> load.population)
+            .thenComparingInt(load -> load.number);
+
+    private static final Map<Integer, WorldLoad> worldLoads = new HashMap<>();
+    private static final Map<WorldSelection, Pool> pools = new HashMap<>();
+
+    private WorldAssigner() {
+    }
+
+    public static final class Pool {
+        private final WorldSelection selection;
+        private final TreeSet<WorldLoad> worldsByLoad = new TreeSet<>(LOAD_ORDER);
+        private final Map<Integer, World> worlds = new HashMap<>();
+        private int holders;
+
+        private Pool(final WorldSelection selection) {
+            this.selection = selection;
+        }
+
+        public int size() {
+            return worlds.size();
+        }
+
+        // Empty when the pool has no worlds
+        public Optional<Assignment> assign() {
+            return assign(world -> 0);
+        }
+
+        // The penalty is added to each world's load, for a bot that is better off on some worlds than on others.
+        // Worlds are looked at in load order, until their load alone is higher than the best load with penalty, and at most
+        // MAX_PENALTY_CANDIDATES of them.
+        public Optional<Assignment> assign(final IntToDoubleFunction penalty) {
+            synchronized (WorldAssigner.class) {
+                WorldLoad bestWorldLoad = null;
+                double bestScore = Double.MAX_VALUE;
+                int candidates = 0;
+                for (final WorldLoad worldLoad : worldsByLoad) {
+                    if (worldLoad.score >= bestScore || candidates++ == MAX_PENALTY_CANDIDATES) {
+                        break;
+                    }
+                    double score = worldLoad.score + penalty.applyAsDouble(worldLoad.number);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestWorldLoad = worldLoad;
+                    }
+                }
+                if (bestWorldLoad == null) {
+                    return Optional.empty();
+                }
+                changeBots(bestWorldLoad, 1);
+                return Optional.of(new Assignment(worlds.get(bestWorldLoad.number), bestWorldLoad));
+            }
+        }
+
+        // Once no run holds the pool it stops being kept in step, a later getPool builds it again
+        public void release() {
+            synchronized (WorldAssigner.class) {
+                if (holders > 0 && --holders == 0) {
+                    pools.remove(selection);
+                    for (final WorldLoad worldLoad : worldsByLoad) {
+                        worldLoad.pools.remove(this);
+                    }
+                }
+            }
+        }
+
+        private void setWorlds(final Collection<World> newWorlds) {
+            worlds.clear();
+            for (final World world : newWorlds) {
+                worlds.put(world.getNumber(), world);
+            }
+        }
+    }
+
+    public static final class Assignment {
+        private final World world;
+        private final WorldLoad worldLoad;
+        private boolean released;
+
+        private Assignment(final World world, final WorldLoad worldLoad) {
+            this.world = world;
+            this.worldLoad = worldLoad;
+        }
+
+        public World getWorld() {
+            return world;
+        }
+
+        // Safe to call more than once, only the first call frees the bot's place on the world
+        public void release() {
+            synchronized (WorldAssigner.class) {
+                if (!released) {
+                    released = true;
+                    changeBots(worldLoad, -1);
+                }
+            }
+        }
+    }
+
+    // Configurations that select the same worlds share a pool. Each call holds it until a matching Pool.release()
+    public static synchronized Pool getPool(final WorldSelection selection) {
+        Pool pool = pools.get(selection);
+        if (pool == null) {
+            pool = new Pool(selection);
+            pool.setWorlds(selection.getWorlds());
+            for (final int number : pool.worlds.keySet()) {
+                WorldLoad worldLoad = worldLoads.computeIfAbsent(number, WorldLoad::new);
+                worldLoad.pools.add(pool);
+                pool.worldsByLoad.add(worldLoad);
+            }
+            pools.put(selection, pool);
+        }
+        pool.holders++;
+        return pool;
+    }
+
+    public static synchronized int getBots(final int worldNumber) {
+        WorldLoad worldLoad = worldLoads.get(worldNumber);
+        return worldLoad != null ? worldLoad.bots : 0;
+    }
+
+    // Held pools keep their world numbers and take the worlds as they are in the new list.
+    // Selections resolved from rules change with the list, their old pools go once the runs holding them finish.
+    static synchronized void updateWorlds(final Collection<World> worlds) {
+        for (final Pool pool : pools.values()) {
+            pool.setWorlds(pool.selection.getWorlds());
+        }
+
+        for (final World world : worlds) {
+            WorldLoad worldLoad = worldLoads.computeIfAbsent(world.getNumber(), WorldLoad::new);
+            detach(worldLoad);
+            worldLoad.population = Math.max(0, world.getPopulation());
+            worldLoad.updateScore();
+            attach(worldLoad);
+        }
+    }
+
+    private static void changeBots(final WorldLoad worldLoad, final int change) {
+        detach(worldLoad);
+        worldLoad.bots += change;
+        worldLoad.updateScore();
+        attach(worldLoad);
+    }
+
+    // A load has to leave every ordered set before its score changes, or the sets can no longer find it
+    private static void detach(final WorldLoad worldLoad) {
+        for (final Pool pool : worldLoad.pools) {
+            pool.worldsByLoad.remove(worldLoad);
+        }
+    }
+
+    private static void attach(final WorldLoad worldLoad) {
+        for (final Pool pool : worldLoad.pools) {
+            pool.worldsByLoad.add(worldLoad);
+        }
+    }
+
+    private static double getPopulationWeight() {
+        try {
+            return Math.max(0, Double.parseDouble(Settings.getPreference(POPULATION_WEIGHT_PREFERENCE, "0")));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class WorldLoad {
+        private final int number;
+        private final List<Pool> pools = new ArrayList<>(1);
+        private int bots;
+        private int population;
+        private double score;
+
+        private WorldLoad(final int number) {
+            this.number = number;
+        }
+
+        // With a weight of 1, a thousand players on a world count as much as one more bot
+        private void updateScore() {
+            score = bots + POPULATION_WEIGHT * population / 1000.0;
+        }
+    }
+}
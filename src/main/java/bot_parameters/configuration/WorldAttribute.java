@@ -0,0 +1,75 @@
+package bot_parameters.configuration;
+
+import java.util.Locale;
+
+// What a world is for and where it is, each attribute is one bit of World.getAttributes().
+// Activities are recognised by keywords in the world's detail text, regions come from the world list's location.
+public enum WorldAttribute {
+    // The bits are saved in world rules, an attribute keeps its bit for good and a removed one's bit is never reused
+    MEMBERS(0, "Members"),
+    PVP(1, "PvP", "pvp"),
+    HIGH_RISK(2, "High risk", "high risk"),
+    SKILL_TOTAL(3, "Skill total", "skill total", "total level"),
+    DEADMAN(4, "Deadman", "deadman"),
+    BOUNTY_HUNTER(5, "Bounty Hunter", "bounty hunter"),
+    LAST_MAN_STANDING(6, "Last Man Standing", "last man standing"),
+    SEASONAL(7, "Seasonal", "league", "seasonal"),
+    FRESH_START(8, "Fresh start", "fresh start"),
+    SPEEDRUNNING(9, "Speedrunning", "speedrun"),
+    BETA(10, "Beta", "beta"),
+    US(11, "United States"),
+    UK(12, "United Kingdom"),
+    GERMANY(13, "Germany"),
+    AUSTRALIA(14, "Australia");
+
+    public static final WorldAttribute[] ACTIVITIES = {PVP, HIGH_RISK, SKILL_TOTAL, DEADMAN, BOUNTY_HUNTER, LAST_MAN_STANDING,
+            SEASONAL, FRESH_START, SPEEDRUNNING, BETA};
+    public static final WorldAttribute[] REGIONS = {US, UK, GERMANY, AUSTRALIA};
+
+    private final int bit;
+    private final String name;
+    private final String[] keywords;
+
+    WorldAttribute(final int bit, final String name, final String... keywords) {
+        this.bit = bit;
+        this.name = name;
+        this.keywords = keywords;
+    }
+
+    public int getMask() {
+        return 1 << bit;
+    }
+
+    // Null when the location is not one of the regions
+    public static WorldAttribute getRegion(final String location) {
+        for (final WorldAttribute region : REGIONS) {
+            if (region.name.equalsIgnoreCase(location)) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    static int getMask(final WorldType type, final String detail, final WorldAttribute region) {
+        int mask = type == WorldType.MEMBERS ? MEMBERS.getMask() : 0;
+        if (region != null) {
+            mask |= region.getMask();
+        }
+
+        String lowerCaseDetail = detail.toLowerCase(Locale.ROOT);
+        for (final WorldAttribute activity : ACTIVITIES) {
+            for (final String keyword : activity.keywords) {
+                if (lowerCaseDetail.contains(keyword)) {
+                    mask |= activity.getMask();
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
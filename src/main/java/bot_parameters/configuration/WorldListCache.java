@@ -0,0 +1,169 @@
+package bot_parameters.configuration;
+
+import settings.Settings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Keeps the world list in the storage directory, so it is available straight away and without a connection.
+// A stale list is still served while a fresh one is fetched in the background, listeners are told once it arrives.
+// The cache file holds the fetch time on its first line, then one world per line: number, type, population, region, detail.
+public final class WorldListCache {
+
+    public static final String TTL_MINUTES_PREFERENCE = "worlds.cache_ttl_minutes";
+    public static final String CACHE_FILE = Paths.get(Settings.STORAGE_DIR, "worlds.cache").toString();
+
+    private static final int DEFAULT_TTL_MINUTES = 60;
+    // After a failed refresh, offline for example, the next attempt waits at least this long
+    private static final long RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "world-list-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final List<Consumer<List<World>>> listeners = new CopyOnWriteArrayList<>();
+
+    private static List<World> worlds;
+    private static long fetchedTime;
+    private static long lastAttemptTime;
+    private static CompletableFuture<List<World>> refresh;
+
+    private WorldListCache() {
+    }
+
+    // Never waits for the network, empty only until the first list has been fetched
+    public static synchronized List<World> getWorlds() {
+        if (worlds == null) {
+            readCache();
+        }
+        if (isStale() && System.currentTimeMillis() - lastAttemptTime >= RETRY_DELAY_MS) {
+            refresh();
+        }
+        return worlds;
+    }
+
+    // Listeners are called on the refresh thread with the new list
+    public static void addListener(final Consumer<List<World>> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(final Consumer<List<World>> listener) {
+        listeners.remove(listener);
+    }
+
+    // Completes with the fetched list once it is in use and listeners have been told, or exceptionally when the fetch
+    // failed and the previous list is kept
+    public static synchronized CompletableFuture<List<World>> refresh() {
+        if (refresh != null && !refresh.isDone()) {
+            return refresh;
+        }
+        lastAttemptTime = System.currentTimeMillis();
+
+        WorldSource source = WorldSource.fromPreferences();
+        CompletableFuture<List<World>> fetch = CompletableFuture.supplyAsync(() -> {
+            try {
+                List<World> fetchedWorlds = source.fetchWorlds();
+                if (fetchedWorlds.isEmpty()) {
+                    throw new IOException("No worlds found at " + source.getURL());
+                }
+                fetchedWorlds.sort(World.getWorldComparator());
+                return fetchedWorlds;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, refresher);
+
+        refresh = fetch.whenComplete((fetchedWorlds, throwable) -> {
+            if (throwable != null) {
+                System.err.println("Failed to refresh the world list: " + throwable.getCause().getMessage());
+                return;
+            }
+            update(fetchedWorlds, System.currentTimeMillis());
+            writeCache(fetchedWorlds, System.currentTimeMillis());
+            listeners.forEach(listener -> listener.accept(fetchedWorlds));
+        });
+        return refresh;
+    }
+
+    // Forgets the list in memory, the next getWorlds() starts again from the cache file
+    static synchronized void reset() {
+        worlds = null;
+        fetchedTime = 0;
+        lastAttemptTime = 0;
+        refresh = null;
+    }
+
+    private static synchronized void update(final List<World> newWorlds, final long newFetchedTime) {
+        worlds = Collections.unmodifiableList(new ArrayList<>(newWorlds));
+        fetchedTime = newFetchedTime;
+        WorldRegistry.register(worlds);
+        WorldAssigner.updateWorlds(worlds);
+    }
+
+    private static boolean isStale() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(Settings.getIntPreference(TTL_MINUTES_PREFERENCE, DEFAULT_TTL_MINUTES));
+        return worlds.isEmpty() || System.currentTimeMillis() - fetchedTime >= ttlMillis;
+    }
+
+    private static void readCache() {
+        List<World> cachedWorlds = new ArrayList<>();
+        long cachedTime = 0;
+
+        File cacheFile = new File(CACHE_FILE);
+        if (cacheFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                cachedTime = Long.parseLong(reader.readLine().trim());
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", 5);
+                    // Caches written before regions were stored have no region field
+                    WorldAttribute region = fields.length == 5 && !fields[3].equals("-") ? WorldAttribute.valueOf(fields[3]) : null;
+                    String detail = fields[fields.length - 1];
+                    cachedWorlds.add(new World(WorldType.valueOf(fields[1]), Integer.parseInt(fields[0]), detail, Integer.parseInt(fields[2]), region));
+                }
+            } catch (IOException | RuntimeException e) {
+                // A damaged cache is as good as none, it is replaced by the next refresh
+                System.err.println("Failed to read the world list cache: " + e);
+                cachedWorlds.clear();
+                cachedTime = 0;
+            }
+        }
+
+        cachedWorlds.sort(World.getWorldComparator());
+        update(cachedWorlds, cachedTime);
+    }
+
+    // Written to a temporary file first, so a crash while writing never leaves half a list behind
+    private static void writeCache(final List<World> worlds, final long fetchedTime) {
+        Path cachePath = Paths.get(CACHE_FILE);
+        Path tempPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            writer.write(fetchedTime + "\n");
+            for (final World world : worlds) {
+                writer.write(world.getNumber() + "\t" + world.getType().name() + "\t" + world.getPopulation() + "\t"
+                        + (world.getRegion() != null ? world.getRegion().name() : "-") + "\t" + world.getDetail().replace('\t', ' ').replace('\n', ' ') + "\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        try {
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package bot_parameters.configuration;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// The one World object for each world number, from the latest world list.
+// Selections only store world numbers and look their worlds up here, so a refreshed detail shows up everywhere at once.
+// The worlds with each attribute are indexed as bitsets by world number, for rules to combine.
+public final class WorldRegistry {
+
+    private static volatile Index index;
+
+    private WorldRegistry() {
+    }
+
+    static final class Index {
+        private final Map<Integer, World> worlds;
+        private final BitSet allWorlds = new BitSet();
+        private final BitSet[] worldsByAttribute = new BitSet[WorldAttribute.values().length];
+
+        private Index(final Collection<World> newWorlds) {
+            Map<Integer, World> registeredWorlds = new HashMap<>(newWorlds.size() * 2);
+            for (int i = 0; i < worldsByAttribute.length; i++) {
+                worldsByAttribute[i] = new BitSet();
+            }
+            for (final World world : newWorlds) {
+                registeredWorlds.put(world.getNumber(), world);
+                allWorlds.set(world.getNumber());
+                for (final WorldAttribute attribute : WorldAttribute.values()) {
+                    if (world.hasAttribute(attribute)) {
+                        worldsByAttribute[attribute.ordinal()].set(world.getNumber());
+                    }
+                }
+            }
+            worlds = Collections.unmodifiableMap(registeredWorlds);
+        }
+
+        // Copies, the index itself is shared and never changes
+        BitSet getAllWorlds() {
+            return (BitSet) allWorlds.clone();
+        }
+
+        BitSet getWorlds(final WorldAttribute attribute) {
+            return worldsByAttribute[attribute.ordinal()];
+        }
+    }
+
+    // Null when the world is not in the world list
+    public static World get(final int number) {
+        return getIndex().worlds.get(number);
+    }
+
+    // The registered world equal to the given one, or the given world when it is not in the list
+    public static World getCanonical(final World world) {
+        World canonicalWorld = get(world.getNumber());
+        return world.equals(canonicalWorld) ? canonicalWorld : world;
+    }
+
+    static void register(final Collection<World> newWorlds) {
+        index = new Index(newWorlds);
+    }
+
+    // Replaced as a whole when the world list changes, so it can also tell whether anything derived from it is current
+    static Index getIndex() {
+        Index currentIndex = index;
+        if (currentIndex == null) {
+            // Loading the list registers its worlds, outside of any lock as the cache calls back in here
+            WorldListCache.getWorlds();
+            currentIndex = index;
+        }
+        return currentIndex;
+    }
+}
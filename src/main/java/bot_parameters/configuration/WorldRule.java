@@ -0,0 +1,126 @@
+package bot_parameters.configuration;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Selects worlds by attribute instead of by number, so worlds added to the world list are picked up without editing.
+// A world matches when it has every required attribute, none of the excluded ones, and is in one of the regions
+// when any are given. Resolving combines the registry's attribute bitsets, and is remembered until the world list changes.
+public final class WorldRule implements Serializable {
+    private static final long serialVersionUID = -4718204417342259321L;
+
+    private final int required;
+    private final int excluded;
+    private final int regions;
+
+    private transient volatile Resolution resolution;
+
+    public WorldRule(final int required, final int excluded, final int regions) {
+        this.required = required & ~excluded;
+        this.excluded = excluded;
+        this.regions = regions;
+    }
+
+    public int getRequired() {
+        return required;
+    }
+
+    public int getExcluded() {
+        return excluded;
+    }
+
+    public int getRegions() {
+        return regions;
+    }
+
+    public boolean matches(final World world) {
+        int attributes = world.getAttributes();
+        return (attributes & required) == required && (attributes & excluded) == 0 && (regions == 0 || (attributes & regions) != 0);
+    }
+
+    // The worlds in the current world list that match
+    public WorldSelection resolve() {
+        WorldRegistry.Index index = WorldRegistry.getIndex();
+        Resolution currentResolution = resolution;
+        if (currentResolution != null && currentResolution.index == index) {
+            return currentResolution.selection;
+        }
+
+        BitSet numbers = index.getAllWorlds();
+        BitSet regionWorlds = regions != 0 ? new BitSet() : null;
+        for (final WorldAttribute attribute : WorldAttribute.values()) {
+            int mask = attribute.getMask();
+            if ((required & mask) != 0) {
+                numbers.and(index.getWorlds(attribute));
+            } else if ((excluded & mask) != 0) {
+                numbers.andNot(index.getWorlds(attribute));
+            }
+            if ((regions & mask) != 0) {
+                regionWorlds.or(index.getWorlds(attribute));
+            }
+        }
+        if (regionWorlds != null) {
+            numbers.and(regionWorlds);
+        }
+
+        BitSet members = (BitSet) numbers.clone();
+        members.and(index.getWorlds(WorldAttribute.MEMBERS));
+
+        WorldSelection selection = WorldSelection.of(numbers, members);
+        resolution = new Resolution(index, selection);
+        return selection;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof WorldRule)) {
+            return false;
+        }
+        WorldRule otherRule = (WorldRule) other;
+        return required == otherRule.required && excluded == otherRule.excluded && regions == otherRule.regions;
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * required + excluded) * 31 + regions;
+    }
+
+    // Reads like "Members, not PvP, not Skill total, United States"
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        parts.add((required & WorldAttribute.MEMBERS.getMask()) != 0 ? "Members"
+                : (excluded & WorldAttribute.MEMBERS.getMask()) != 0 ? "F2P" : "Any worlds");
+
+        List<String> regionNames = new ArrayList<>();
+        for (final WorldAttribute attribute : WorldAttribute.values()) {
+            if (attribute == WorldAttribute.MEMBERS) {
+                continue;
+            }
+            if ((required & attribute.getMask()) != 0) {
+                parts.add(attribute.toString());
+            } else if ((excluded & attribute.getMask()) != 0) {
+                parts.add("not " + attribute);
+            }
+            if ((regions & attribute.getMask()) != 0) {
+                regionNames.add(attribute.toString());
+            }
+        }
+        if (!regionNames.isEmpty()) {
+            parts.add(String.join(" or ", regionNames));
+        }
+        return String.join(", ", parts);
+    }
+
+    private static final class Resolution {
+        private final WorldRegistry.Index index;
+        private final WorldSelection selection;
+
+        private Resolution(final WorldRegistry.Index index, final WorldSelection selection) {
+            this.index = index;
+            this.selection = selection;
+        }
+    }
+}
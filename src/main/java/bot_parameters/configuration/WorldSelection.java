@@ -0,0 +1,126 @@
+package bot_parameters.configuration;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+// An immutable set of worlds, stored as bits indexed by world number.
+// Equal selections are interned, configurations selecting the same worlds share one instance, and so does a settings file.
+// The members bits let a world that is missing from the current world list still be shown with its type.
+public final class WorldSelection implements Serializable {
+    private static final long serialVersionUID = 3815730185042117297L;
+
+    // Weak both ways, a selection no configuration uses any more is not kept alive by the interner
+    private static final Map<WorldSelection, WeakReference<WorldSelection>> interned = new WeakHashMap<>();
+    private static final WorldSelection EMPTY = intern(new WorldSelection(new BitSet(), new BitSet()));
+
+    private final BitSet numbers;
+    private final BitSet members;
+
+    private WorldSelection(final BitSet numbers, final BitSet members) {
+        this.numbers = numbers;
+        this.members = members;
+    }
+
+    public static WorldSelection empty() {
+        return EMPTY;
+    }
+
+    public static WorldSelection of(final Collection<World> worlds) {
+        BitSet numbers = new BitSet();
+        BitSet members = new BitSet();
+        for (final World world : worlds) {
+            numbers.set(world.getNumber());
+            if (world.getType() == WorldType.MEMBERS) {
+                members.set(world.getNumber());
+            }
+        }
+        return intern(new WorldSelection(numbers, members));
+    }
+
+    // Takes ownership of the bitsets
+    static WorldSelection of(final BitSet numbers, final BitSet members) {
+        return intern(new WorldSelection(numbers, members));
+    }
+
+    // The members worlds are those of the numbers that are members worlds
+    public static WorldSelection of(final int[] numbers, final int[] members) {
+        BitSet numberBits = new BitSet();
+        BitSet memberBits = new BitSet();
+        for (final int number : numbers) {
+            numberBits.set(number);
+        }
+        for (final int number : members) {
+            memberBits.set(number);
+        }
+        memberBits.and(numberBits);
+        return intern(new WorldSelection(numberBits, memberBits));
+    }
+
+    private static synchronized WorldSelection intern(final WorldSelection selection) {
+        WeakReference<WorldSelection> reference = interned.get(selection);
+        WorldSelection internedSelection = reference != null ? reference.get() : null;
+        if (internedSelection == null) {
+            interned.put(selection, new WeakReference<>(selection));
+            internedSelection = selection;
+        }
+        return internedSelection;
+    }
+
+    public int size() {
+        return numbers.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return numbers.isEmpty();
+    }
+
+    public boolean contains(final World world) {
+        return numbers.get(world.getNumber());
+    }
+
+    public int[] getNumbers() {
+        return numbers.stream().toArray();
+    }
+
+    public int[] getMembersNumbers() {
+        return members.stream().toArray();
+    }
+
+    // In world number order, each world as it is in the current world list
+    public List<World> getWorlds() {
+        List<World> worlds = new ArrayList<>(numbers.cardinality());
+        for (int number = numbers.nextSetBit(0); number >= 0; number = numbers.nextSetBit(number + 1)) {
+            World world = WorldRegistry.get(number);
+            if (world == null) {
+                world = new World(members.get(number) ? WorldType.MEMBERS : WorldType.F2P, number, "");
+            }
+            worlds.add(world);
+        }
+        return worlds;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return intern(this);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof WorldSelection)) {
+            return false;
+        }
+        WorldSelection otherSelection = (WorldSelection) other;
+        return numbers.equals(otherSelection.numbers) && members.equals(otherSelection.members);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * numbers.hashCode() + members.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getWorlds().toString();
+    }
+}
@@ -0,0 +1,46 @@
+package bot_parameters.configuration;
+
+import settings.Settings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+// Where the world list comes from, the implementation is chosen with the worlds.source preference.
+public interface WorldSource {
+
+    String SOURCE_PREFERENCE = "worlds.source";
+    String URL_PREFERENCE = "worlds.url";
+
+    int TIMEOUT_MS = 30_000;
+
+    static WorldSource fromPreferences() {
+        String url = Settings.getPreference(URL_PREFERENCE, null);
+        switch (Settings.getPreference(SOURCE_PREFERENCE, "html").trim().toLowerCase()) {
+            case "binary":
+                return new BinaryWorldSource(url != null ? url : BinaryWorldSource.DEFAULT_URL);
+            case "jsoup":
+                return new JsoupWorldSource(url != null ? url : HTMLWorldSource.DEFAULT_URL);
+            default:
+                return new HTMLWorldSource(url != null ? url : HTMLWorldSource.DEFAULT_URL);
+        }
+    }
+
+    String getURL();
+
+    // The worlds in the order they were read, the caller sorts them
+    List<World> read(InputStream inputStream) throws IOException;
+
+    default List<World> fetchWorlds() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(getURL()).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        try (InputStream inputStream = connection.getInputStream()) {
+            return read(inputStream);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package bot_parameters.interfaces;
 
+import javafx.beans.Observable;
+
 public interface BotParameter {
     String[] toParameter();
+
+    // Everything toParameter depends on, so command lines built from it can be cached until one of these changes
+    default Observable[] getParameterObservables() {
+        return new Observable[0];
+    }
 }
@@ -0,0 +1,291 @@
+package bot_parameters.proxy;
+
+import settings.Settings;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+
+// Measures how long a connection to a world takes from behind each proxy, or without one.
+// Through a proxy only the SOCKS5 CONNECT is timed, which is the proxy's own round trip to the world, the way from the
+// manager to the proxy does not matter to the bot. Probes run a bounded number at a time, a probe already running or
+// a result younger than the TTL is not probed again, and a world that can not be reached counts as the timeout.
+public final class LatencyProbe {
+
+    public static final String WEIGHT_PREFERENCE = "latency.weight";
+    public static final String TTL_MINUTES_PREFERENCE = "latency.ttl_minutes";
+    public static final String MAX_CONCURRENT_PREFERENCE = "latency.max_concurrent";
+    public static final String TIMEOUT_MS_PREFERENCE = "latency.timeout_ms";
+    public static final String WORLD_HOST_PREFERENCE = "latency.world_host";
+    public static final String WORLD_PORT_PREFERENCE = "latency.world_port";
+
+    // %d is the world number without the leading 3, world 301 is oldschool1
+    private static final String DEFAULT_WORLD_HOST = "oldschool%d.runescape.com";
+    private static final int DEFAULT_WORLD_PORT = 43594;
+    private static final int FIRST_WORLD = 300;
+    private static final String DIRECT = "direct";
+
+    private static volatile LatencyProbe instance;
+
+    private final IntFunction<InetSocketAddress> worldAddresses;
+    private final int timeoutMs;
+    private final long ttlNanos;
+    private final ExecutorService executor;
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Long>> probes = new ConcurrentHashMap<>();
+
+    public LatencyProbe(final IntFunction<InetSocketAddress> worldAddresses, final int maxConcurrent, final int timeoutMs, final long ttlMillis) {
+        this.worldAddresses = worldAddresses;
+        this.timeoutMs = timeoutMs;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "latency-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+    }
+
+    // Null when the weight preference is 0, latency is then not measured or used at all
+    public static LatencyProbe getInstance() {
+        LatencyProbe probe = instance;
+        if (probe == null && getWeight() > 0) {
+            synchronized (LatencyProbe.class) {
+                if (instance == null) {
+                    String worldHost = Settings.getPreference(WORLD_HOST_PREFERENCE, DEFAULT_WORLD_HOST);
+                    int worldPort = Settings.getIntPreference(WORLD_PORT_PREFERENCE, DEFAULT_WORLD_PORT);
+                    instance = new LatencyProbe(
+                            world -> InetSocketAddress.createUnresolved(String.format(worldHost, world - FIRST_WORLD), worldPort),
+                            Math.max(1, Settings.getIntPreference(MAX_CONCURRENT_PREFERENCE, 16)),
+                            Math.max(100, Settings.getIntPreference(TIMEOUT_MS_PREFERENCE, 3000)),
+                            TimeUnit.MINUTES.toMillis(Math.max(1, Settings.getIntPreference(TTL_MINUTES_PREFERENCE, 30))));
+                }
+                probe = instance;
+            }
+        }
+        return probe;
+    }
+
+    // Off unless set, probing opens connections to every world. With a weight of 1, every 100 ms of round trip counts as
+    // much as one more bot on the world
+    public static double getWeight() {
+        try {
+            return Math.max(0, Double.parseDouble(Settings.getPreference(WEIGHT_PREFERENCE, "0")));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // The cached round trip in milliseconds, -1 when there is none yet or it has expired
+    public long getLatency(final Proxy proxy, final int world) {
+        String key = getKey(proxy, world);
+        Result result = results.get(key);
+        if (result == null) {
+            return -1;
+        }
+        if (result.isExpired()) {
+            results.remove(key, result);
+            return -1;
+        }
+        return result.millis;
+    }
+
+    // Results held, expired ones included until they are pruned
+    int getResultCount() {
+        return results.size();
+    }
+
+    // Starts probing the worlds without a current result, without waiting for any of them
+    public void probeAll(final Proxy proxy, final Collection<Integer> worlds) {
+        // Results of proxies that were deleted or edited are never asked for again, they are dropped once expired
+        results.values().removeIf(Result::isExpired);
+
+        for (final int world : worlds) {
+            if (getLatency(proxy, world) == -1) {
+                probe(proxy, world);
+            }
+        }
+    }
+
+    // Completes with the round trip in milliseconds, or the timeout when the world could not be reached
+    public CompletableFuture<Long> probe(final Proxy proxy, final int world) {
+        String key = getKey(proxy, world);
+        CompletableFuture<Long> probe = new CompletableFuture<>();
+        CompletableFuture<Long> runningProbe = probes.putIfAbsent(key, probe);
+        if (runningProbe != null) {
+            return runningProbe;
+        }
+
+        // Copied, the proxy can be edited while the probe waits for a thread
+        String proxyHost = proxy != null ? proxy.getIpAddress() : null;
+        int proxyPort = proxy != null ? proxy.getPort() : -1;
+        String username = proxy instanceof SecuredProxy ? ((SecuredProxy) proxy).getUsername() : null;
+        String password = proxy instanceof SecuredProxy ? ((SecuredProxy) proxy).getPassword() : null;
+
+        executor.execute(() -> {
+            long millis = timeoutMs;
+            try {
+                InetSocketAddress worldAddress = worldAddresses.apply(world);
+                millis = proxyHost != null
+                        ? measureThroughProxy(new InetSocketAddress(proxyHost, proxyPort), username, password, worldAddress)
+                        : measureDirect(worldAddress);
+            } catch (IOException | RuntimeException e) {
+                // Unreachable, counted as the timeout
+            } finally {
+                results.put(key, new Result(millis));
+                probes.remove(key, probe);
+                probe.complete(millis);
+            }
+        });
+        return probe;
+    }
+
+    // Measured worlds cost their latency, worlds not measured yet cost nothing until their probe finishes
+    public IntToDoubleFunction getPenalty(final Proxy proxy, final double weight) {
+        return world -> {
+            long millis = getLatency(proxy, world);
+            return millis == -1 ? 0 : weight * millis / 100.0;
+        };
+    }
+
+    private long measureDirect(final InetSocketAddress worldAddress) throws IOException {
+        InetSocketAddress resolvedAddress = resolve(worldAddress);
+        try (Socket socket = new Socket()) {
+            long start = System.nanoTime();
+            socket.connect(resolvedAddress, timeoutMs);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    // RFC 1928, with RFC 1929 username and password authentication for secured proxies
+    private long measureThroughProxy(final InetSocketAddress proxyAddress, final String username, final String password,
+                                     final InetSocketAddress worldAddress) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(proxyAddress, timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            boolean authenticate = username != null && !username.isEmpty();
+            out.write(authenticate ? new byte[]{5, 1, 2} : new byte[]{5, 1, 0});
+            out.flush();
+            if (in.readUnsignedByte() != 5) {
+                throw new IOException("Not a SOCKS5 proxy");
+            }
+            int method = in.readUnsignedByte();
+            if (method == 2 && authenticate) {
+                byte[] user = username.getBytes(StandardCharsets.UTF_8);
+                byte[] pass = (password != null ? password : "").getBytes(StandardCharsets.UTF_8);
+                out.write(1);
+                out.write(user.length);
+                out.write(user);
+                out.write(pass.length);
+                out.write(pass);
+                out.flush();
+                in.readUnsignedByte();
+                if (in.readUnsignedByte() != 0) {
+                    throw new IOException("Proxy authentication failed");
+                }
+            } else if (method != 0) {
+                throw new IOException("No acceptable authentication method");
+            }
+
+            byte[] request = getConnectRequest(worldAddress);
+            long start = System.nanoTime();
+            out.write(request);
+            out.flush();
+            in.readUnsignedByte();
+            int reply = in.readUnsignedByte();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (reply != 0) {
+                throw new IOException("Proxy could not connect, reply " + reply);
+            }
+            skipBoundAddress(in);
+            return millis;
+        }
+    }
+
+    // An unresolved host is resolved by the proxy, as the client itself would have it
+    private static byte[] getConnectRequest(final InetSocketAddress address) {
+        byte[] host;
+        byte addressType;
+        if (address.isUnresolved()) {
+            byte[] name = address.getHostString().getBytes(StandardCharsets.US_ASCII);
+            host = new byte[name.length + 1];
+            host[0] = (byte) name.length;
+            System.arraycopy(name, 0, host, 1, name.length);
+            addressType = 3;
+        } else {
+            host = address.getAddress().getAddress();
+            addressType = (byte) (address.getAddress() instanceof Inet4Address ? 1 : 4);
+        }
+
+        byte[] request = new byte[4 + host.length + 2];
+        request[0] = 5;
+        request[1] = 1; // CONNECT
+        request[3] = addressType;
+        System.arraycopy(host, 0, request, 4, host.length);
+        request[request.length - 2] = (byte) (address.getPort() >> 8);
+        request[request.length - 1] = (byte) address.getPort();
+        return request;
+    }
+
+    private static void skipBoundAddress(final DataInputStream in) throws IOException {
+        in.readUnsignedByte(); // reserved
+        int addressType = in.readUnsignedByte();
+        int length = addressType == 1 ? 4 : addressType == 4 ? 16 : in.readUnsignedByte();
+        skipFully(in, length + 2);
+    }
+
+    private static void skipFully(final InputStream in, final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (in.read() == -1) {
+                throw new IOException("Truncated proxy reply");
+            }
+        }
+    }
+
+    private static InetSocketAddress resolve(final InetSocketAddress address) throws IOException {
+        if (!address.isUnresolved()) {
+            return address;
+        }
+        return new InetSocketAddress(InetAddress.getByName(address.getHostString()), address.getPort());
+    }
+
+    // The username is part of it, a proxy that rejects one account's credentials still works for another
+    private static String getKey(final Proxy proxy, final int world) {
+        if (proxy == null) {
+            return DIRECT + "/" + world;
+        }
+        String user = proxy instanceof SecuredProxy ? ((SecuredProxy) proxy).getUsername() + "@" : "";
+        return user + proxy.getIpAddress() + ":" + proxy.getPort() + "/" + world;
+    }
+
+    private final class Result {
+        private final long millis;
+        private final long time = System.nanoTime();
+
+        private Result(final long millis) {
+            this.millis = millis;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - time >= ttlNanos;
+        }
+    }
+}
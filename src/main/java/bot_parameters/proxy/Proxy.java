@@ -2,6 +2,7 @@ package bot_parameters.proxy;
 
 import bot_parameters.interfaces.BotParameter;
 import bot_parameters.interfaces.Copyable;
+import javafx.beans.Observable;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import org.apache.commons.lang3.StringUtils;
@@ -73,6 +74,11 @@ public class Proxy implements BotParameter, Copyable<Proxy>, Serializable {
         return new String[]{"-proxy", String.format("%s:%d", ipAddress.get(), port.get())};
     }
 
+    @Override
+    public Observable[] getParameterObservables() {
+        return new Observable[]{ipAddress, port};
+    }
+
     @Override
     public String toString() {
         return getNickname() + " (" + ipAddress.get() + ":" + port.get() + ")";
@@ -1,5 +1,6 @@
 package bot_parameters.proxy;
 
+import javafx.beans.Observable;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import org.apache.commons.lang3.StringUtils;
@@ -13,17 +14,21 @@ public class SecuredProxy extends Proxy {
     private static final long serialVersionUID = -1302145627906882719L;
 
     private String username, password;
+    // Changes with the username and password, which are kept as plain strings for compatibility with saved configs
+    private transient SimpleStringProperty credentials = new SimpleStringProperty();
 
     public SecuredProxy(final String ip, final int port, final String username, final String password) {
         super(ip, port);
         this.username = username;
         this.password = password;
+        updateCredentials();
     }
 
     public SecuredProxy(final String ip, final int port, final String username, final String password, final String nickname) {
         super(ip, port, nickname);
         this.username = username;
         this.password = password;
+        updateCredentials();
     }
 
     public final String getUsername() {
@@ -32,6 +37,7 @@ public class SecuredProxy extends Proxy {
 
     public final void setUsername(final String username) {
         this.username = username;
+        updateCredentials();
     }
 
     public final String getPassword() {
@@ -40,6 +46,11 @@ public class SecuredProxy extends Proxy {
 
     public final void setPassword(final String password) {
         this.password = password;
+        updateCredentials();
+    }
+
+    private void updateCredentials() {
+        credentials.set(username + ":" + password);
     }
 
     private void writeObject(ObjectOutputStream stream) throws IOException {
@@ -53,6 +64,7 @@ public class SecuredProxy extends Proxy {
     private void readObject(ObjectInputStream stream) throws ClassNotFoundException, IOException {
         ipAddress = new SimpleStringProperty((String) stream.readObject());
         port = new SimpleIntegerProperty(stream.readInt());
+        credentials = new SimpleStringProperty();
         setUsername((String) stream.readObject());
         setPassword((String) stream.readObject());
         try {
@@ -64,7 +76,12 @@ public class SecuredProxy extends Proxy {
 
     @Override
     public final String[] toParameter() {
-        return new String[]{"-proxy", String.format("%s:%d:%s:%s", getIpAddress(), getPort(), username, password)};
+        return new String[]{"-proxy", String.format("%s:%d:%s", getIpAddress(), getPort(), credentials.get())};
+    }
+
+    @Override
+    public Observable[] getParameterObservables() {
+        return new Observable[]{ipAddress, port, credentials};
     }
 
     @Override
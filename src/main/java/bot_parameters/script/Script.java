@@ -2,6 +2,7 @@ package bot_parameters.script;
 
 import bot_parameters.interfaces.BotParameter;
 import bot_parameters.interfaces.Copyable;
+import javafx.beans.Observable;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import org.apache.commons.lang3.StringUtils;
@@ -77,6 +78,11 @@ public final class Script implements BotParameter, Copyable<Script>, Serializabl
         }
     }
 
+    @Override
+    public Observable[] getParameterObservables() {
+        return new Observable[]{scriptIdentifier, parameters, isLocal};
+    }
+
     private void writeObject(ObjectOutputStream stream) throws IOException {
         stream.writeObject(scriptIdentifier.get());
         stream.writeObject(parameters.get());
@@ -0,0 +1,170 @@
+package bot_process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public final class OutputPump {
+
+    public interface LineSink {
+        void onLine(String line);
+
+        void onClose();
+    }
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(25);
+
+    private static final Worker[] workers = new Worker[WORKER_COUNT];
+    private static final AtomicInteger nextWorker = new AtomicInteger();
+
+    static {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+            Thread thread = new Thread(workers[i], "output-pump-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private OutputPump() {
+    }
+
+    // The stream is considered closed once exited has completed and there is nothing left to read.
+    // Idle sources only ask the stream what is available, whether the process lives is left to the process watcher.
+    public static void register(final InputStream inputStream, final CompletableFuture<?> exited, final LineSink sink) {
+        Worker worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+        worker.pendingSources.add(new Source(inputStream, exited, sink));
+    }
+
+    private static final class Worker implements Runnable {
+
+        private final ConcurrentLinkedQueue<Source> pendingSources = new ConcurrentLinkedQueue<>();
+        private final List<Source> sources = new ArrayList<>();
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+        @Override
+        public void run() {
+            while (true) {
+                Source pendingSource;
+                while ((pendingSource = pendingSources.poll()) != null) {
+                    sources.add(pendingSource);
+                }
+
+                boolean readAny = false;
+
+                Iterator<Source> iterator = sources.iterator();
+                while (iterator.hasNext()) {
+                    Source source = iterator.next();
+                    int bytesRead = source.pump(readBuffer);
+                    if (bytesRead < 0) {
+                        iterator.remove();
+                        source.close();
+                    } else if (bytesRead > 0) {
+                        readAny = true;
+                    }
+                }
+
+                // Pipes are not selectable, so idle workers back off instead of blocking on any single stream
+                if (!readAny) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private static final class Source {
+
+        private final InputStream inputStream;
+        private final CompletableFuture<?> exited;
+        private final LineSink sink;
+        private byte[] lineBuffer = new byte[256];
+        private int lineLength;
+
+        private Source(final InputStream inputStream, final CompletableFuture<?> exited, final LineSink sink) {
+            this.inputStream = inputStream;
+            this.exited = exited;
+            this.sink = sink;
+        }
+
+        private int pump(final byte[] readBuffer) {
+            try {
+                int available = inputStream.available();
+                if (available <= 0) {
+                    // Check for the exit before re-checking the pipe, so output written just before exit is not lost
+                    if (!exited.isDone() || inputStream.available() > 0) {
+                        return 0;
+                    }
+                    return -1;
+                }
+
+                int bytesRead = inputStream.read(readBuffer, 0, Math.min(available, readBuffer.length));
+                if (bytesRead < 0) {
+                    return -1;
+                }
+                append(readBuffer, bytesRead);
+                return bytesRead;
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        private void append(final byte[] bytes, final int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = bytes[i];
+                if (b == '\n') {
+                    emitLine();
+                } else {
+                    if (lineLength == lineBuffer.length) {
+                        if (lineLength >= MAX_LINE_LENGTH) {
+                            emitLine();
+                        } else {
+                            lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, MAX_LINE_LENGTH));
+                        }
+                    }
+                    lineBuffer[lineLength++] = b;
+                }
+            }
+        }
+
+        private void emitLine() {
+            int length = lineLength;
+            if (length > 0 && lineBuffer[length - 1] == '\r') {
+                length--;
+            }
+            lineLength = 0;
+            try {
+                sink.onLine(new String(lineBuffer, 0, length, Charset.defaultCharset()));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void close() {
+            if (lineLength > 0) {
+                emitLine();
+            }
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                sink.onClose();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
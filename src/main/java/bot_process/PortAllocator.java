@@ -0,0 +1,89 @@
+package bot_process;
+
+import settings.Settings;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Leases debug ports to bot processes from a fixed range.
+// A leased port is never handed out again until its lease is released, so two launches can not be given the same port
+// even though the port is free again between the availability check and the client binding it.
+// Ports in use by anything outside the manager are skipped by trying to bind them before they are leased.
+public final class PortAllocator {
+
+    public static final String FIRST_PORT_PREFERENCE = "debug_ports.first";
+    public static final String PORT_COUNT_PREFERENCE = "debug_ports.count";
+
+    private static final int DEFAULT_FIRST_PORT = 45000;
+    private static final int DEFAULT_PORT_COUNT = 2000;
+    private static final int MAX_PORT = 65535;
+
+    private static final BitSet leasedPorts = new BitSet(MAX_PORT + 1);
+    private static int nextPort;
+
+    private PortAllocator() {
+    }
+
+    public static final class Lease {
+        private final int port;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(final int port) {
+            this.port = port;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        // Safe to call more than once, only the first call returns the port to the pool
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                PortAllocator.release(port);
+            }
+        }
+    }
+
+    // Empty when every port in the range is leased or in use
+    public static synchronized Optional<Lease> lease() {
+        int firstPort = Math.max(1, Math.min(MAX_PORT, Settings.getIntPreference(FIRST_PORT_PREFERENCE, DEFAULT_FIRST_PORT)));
+        int portCount = Math.max(1, Math.min(MAX_PORT - firstPort + 1, Settings.getIntPreference(PORT_COUNT_PREFERENCE, DEFAULT_PORT_COUNT)));
+
+        // Handed out round robin, so a port that was just released is not reused straight away
+        if (nextPort < firstPort || nextPort >= firstPort + portCount) {
+            nextPort = firstPort;
+        }
+
+        for (int i = 0; i < portCount; i++) {
+            int port = nextPort;
+            nextPort = port + 1 < firstPort + portCount ? port + 1 : firstPort;
+
+            if (!leasedPorts.get(port) && isBindable(port)) {
+                leasedPorts.set(port);
+                return Optional.of(new Lease(port));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static synchronized int getLeasedCount() {
+        return leasedPorts.cardinality();
+    }
+
+    private static synchronized void release(final int port) {
+        leasedPorts.clear(port);
+    }
+
+    private static boolean isBindable(final int port) {
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package bot_process;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Samples CPU and resident memory of groups of processes from /proc/<pid>/stat.
+// stat holds both the CPU times and the resident set size, so each process costs a single small read.
+// The stat files are kept open between samples and read again from the start, and parsed in place without creating strings.
+// Not thread safe, samples are expected to come from one thread.
+public final class ProcessSampler {
+
+    public static final class Usage {
+        private final double cpuPercent;
+        private final long residentBytes;
+
+        private Usage(final double cpuPercent, final long residentBytes) {
+            this.cpuPercent = cpuPercent;
+            this.residentBytes = residentBytes;
+        }
+
+        // 100% is one core fully used
+        public double getCpuPercent() {
+            return cpuPercent;
+        }
+
+        public long getResidentBytes() {
+            return residentBytes;
+        }
+    }
+
+    // Field numbers from proc(5), counted from the state field right after the command name
+    private static final int UTIME_FIELD = 14 - 3;
+    private static final int STIME_FIELD = 15 - 3;
+    private static final int RSS_FIELD = 24 - 3;
+
+    private static final long CLOCK_TICKS_PER_SECOND = getConf("CLK_TCK", 100);
+    private static final long PAGE_SIZE = getConf("PAGESIZE", 4096);
+
+    private final byte[] buffer = new byte[2048];
+    private final long[] fields = new long[RSS_FIELD + 1];
+    private Map<Integer, Long> previousCpuTicks = new HashMap<>();
+    private Map<Integer, RandomAccessFile> statFiles = new HashMap<>();
+    private long previousSampleTime;
+
+    public static boolean isSupported() {
+        return ProcessTree.isProcfsAvailable();
+    }
+
+    // The CPU usage of a process is only known from its second sample onwards
+    public <K> Map<K, Usage> sample(final Map<K, ? extends Collection<Integer>> processGroups) {
+        long now = System.nanoTime();
+        double elapsedSeconds = previousSampleTime == 0 ? 0 : (now - previousSampleTime) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        Map<Integer, Long> cpuTicks = new HashMap<>();
+        Map<Integer, RandomAccessFile> sampledStatFiles = new HashMap<>();
+        Map<K, Usage> usages = new HashMap<>();
+
+        for (final Map.Entry<K, ? extends Collection<Integer>> processGroup : processGroups.entrySet()) {
+            long groupTicks = 0;
+            long groupResidentBytes = 0;
+
+            for (final int pid : processGroup.getValue()) {
+                if (!readStat(pid, sampledStatFiles)) {
+                    continue;
+                }
+                long ticks = fields[UTIME_FIELD] + fields[STIME_FIELD];
+                cpuTicks.put(pid, ticks);
+
+                Long previousTicks = previousCpuTicks.get(pid);
+                if (previousTicks != null) {
+                    groupTicks += Math.max(0, ticks - previousTicks);
+                }
+                groupResidentBytes += fields[RSS_FIELD] * PAGE_SIZE;
+            }
+
+            double cpuPercent = elapsedSeconds > 0 ? groupTicks * 100.0 / CLOCK_TICKS_PER_SECOND / elapsedSeconds : 0;
+            usages.put(processGroup.getKey(), new Usage(cpuPercent, groupResidentBytes));
+        }
+
+        // Processes that were not sampled this time have exited, or are no longer tracked
+        statFiles.values().forEach(ProcessSampler::closeQuietly);
+        statFiles = sampledStatFiles;
+        previousCpuTicks = cpuTicks;
+        previousSampleTime = now;
+        return usages;
+    }
+
+    private boolean readStat(final int pid, final Map<Integer, RandomAccessFile> sampledStatFiles) {
+        RandomAccessFile statFile = statFiles.remove(pid);
+        int length;
+        try {
+            if (statFile == null) {
+                statFile = new RandomAccessFile("/proc/" + pid + "/stat", "r");
+            }
+            // The kernel returns the whole stat line in one read when the buffer is large enough
+            statFile.seek(0);
+            length = statFile.read(buffer, 0, buffer.length);
+        } catch (IOException e) {
+            // The process exited
+            closeQuietly(statFile);
+            return false;
+        }
+        sampledStatFiles.put(pid, statFile);
+        if (length <= 0) {
+            return false;
+        }
+
+        // The command name may contain spaces and parentheses, so fields are counted from the last ')'
+        int position = length - 1;
+        while (position >= 0 && buffer[position] != ')') {
+            position--;
+        }
+        if (position < 0) {
+            return false;
+        }
+        position += 2;
+
+        for (int field = 0; field < fields.length; field++) {
+            long value = 0;
+            while (position < length && buffer[position] != ' ') {
+                byte b = buffer[position++];
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                }
+            }
+            fields[field] = value;
+            position++;
+            if (position > length && field < fields.length - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void closeQuietly(final RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long getConf(final String name, final long defaultValue) {
+        if (!new File("/proc").isDirectory()) {
+            return defaultValue;
+        }
+        try {
+            Process process = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            byte[] output = new byte[64];
+            int length;
+            try (InputStream inputStream = process.getInputStream()) {
+                length = Math.max(0, inputStream.read(output));
+            }
+            process.waitFor(5, TimeUnit.SECONDS);
+            return Long.parseLong(new String(output, 0, length, StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            return defaultValue;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return defaultValue;
+        }
+    }
+}
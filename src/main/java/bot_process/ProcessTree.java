@@ -0,0 +1,466 @@
+package bot_process;
+
+import exceptions.ProcessesSurvivedException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Finds, watches and ends the processes a bot is made of: the launcher and the client JVM it starts.
+// On Java 9 and later everything goes through ProcessHandle, called reflectively as we still compile against Java 8.
+// Java 8 reads /proc on Linux, and elsewhere lists the process table with ps, or wmic on Windows.
+public final class ProcessTree {
+
+    private static final File PROC_DIR = new File("/proc");
+    private static final boolean WINDOWS = System.getProperty("os.name").startsWith("Windows");
+
+    private static final long TERMINATE_TIMEOUT_MS = 10_000;
+    private static final long KILL_TIMEOUT_MS = 5_000;
+    // Every watched PID is checked on each poll of the process watcher, they share one listing of the process table.
+    // Only used without ProcessHandle or /proc.
+    private static final long PROCESS_TABLE_MAX_AGE_MS = 150;
+
+    private static final Method PID_METHOD;
+    private static final Method HANDLE_OF_METHOD;
+    private static final Method HANDLE_PID_METHOD;
+    private static final Method HANDLE_DESCENDANTS_METHOD;
+    private static final Method HANDLE_IS_ALIVE_METHOD;
+    private static final Method HANDLE_DESTROY_METHOD;
+    private static final Method HANDLE_DESTROY_FORCIBLY_METHOD;
+
+    static {
+        Method pidMethod = null;
+        Method handleOfMethod = null;
+        Method handlePidMethod = null;
+        Method handleDescendantsMethod = null;
+        Method handleIsAliveMethod = null;
+        Method handleDestroyMethod = null;
+        Method handleDestroyForciblyMethod = null;
+        try {
+            // Process.pid() and ProcessHandle exist from Java 9 onwards
+            pidMethod = Process.class.getMethod("pid");
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            handleOfMethod = handleClass.getMethod("of", long.class);
+            handlePidMethod = handleClass.getMethod("pid");
+            handleDescendantsMethod = handleClass.getMethod("descendants");
+            handleIsAliveMethod = handleClass.getMethod("isAlive");
+            handleDestroyMethod = handleClass.getMethod("destroy");
+            handleDestroyForciblyMethod = handleClass.getMethod("destroyForcibly");
+        } catch (ReflectiveOperationException e) {
+            handleOfMethod = null;
+        }
+        PID_METHOD = pidMethod;
+        HANDLE_OF_METHOD = handleOfMethod;
+        HANDLE_PID_METHOD = handlePidMethod;
+        HANDLE_DESCENDANTS_METHOD = handleDescendantsMethod;
+        HANDLE_IS_ALIVE_METHOD = handleIsAliveMethod;
+        HANDLE_DESTROY_METHOD = handleDestroyMethod;
+        HANDLE_DESTROY_FORCIBLY_METHOD = handleDestroyForciblyMethod;
+    }
+
+    // PIDs of processes started by start() whose PID the Process itself does not give away, Java 8 on Windows
+    private static final Map<Process, Integer> startedPIDs = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Object START_LOCK = new Object();
+
+    private static Map<Integer, Integer> processTable;
+    private static long processTableTime;
+
+    private ProcessTree() {
+    }
+
+    // Starts the process, so that its PID is known even where the Process object does not hold it
+    public static Process start(final ProcessBuilder processBuilder) throws IOException {
+        if (PID_METHOD != null || !WINDOWS) {
+            return processBuilder.start();
+        }
+
+        // The new process is the one child of the manager that was not there before it started
+        synchronized (START_LOCK) {
+            int managerPID = getManagerPID();
+            Set<Integer> childrenBefore = getChildPIDs(listProcessTable(), managerPID);
+            Process process = processBuilder.start();
+            Set<Integer> newChildren = getChildPIDs(listProcessTable(), managerPID);
+            newChildren.removeAll(childrenBefore);
+            if (newChildren.size() == 1) {
+                startedPIDs.put(process, newChildren.iterator().next());
+            }
+            return process;
+        }
+    }
+
+    public static int getPID(final Process process) {
+        if (PID_METHOD != null) {
+            try {
+                return ((Long) PID_METHOD.invoke(process)).intValue();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return -1;
+            }
+        }
+
+        Integer startedPID = startedPIDs.get(process);
+        if (startedPID != null) {
+            return startedPID;
+        }
+
+        // Java 8 UNIXProcess keeps the PID in a private field
+        try {
+            Field pidField = process.getClass().getDeclaredField("pid");
+            pidField.setAccessible(true);
+            return pidField.getInt(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    public static boolean isProcfsAvailable() {
+        return PROC_DIR.isDirectory() && new File(PROC_DIR, "self").exists();
+    }
+
+    public static List<Integer> getDescendantPIDs(final int pid) {
+        if (pid == -1) {
+            return Collections.emptyList();
+        }
+
+        if (HANDLE_OF_METHOD != null) {
+            Object handle = getHandle(pid);
+            if (handle == null) {
+                return Collections.emptyList();
+            }
+            try {
+                return ((Stream<?>) HANDLE_DESCENDANTS_METHOD.invoke(handle))
+                        .map(ProcessTree::getHandlePID)
+                        .filter(descendantPID -> descendantPID != -1)
+                        .collect(Collectors.toList());
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return Collections.emptyList();
+            }
+        }
+
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        listProcessTable().forEach((childPID, parentPID) -> children.computeIfAbsent(parentPID, k -> new ArrayList<>()).add(childPID));
+
+        List<Integer> descendants = new ArrayList<>();
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.add(pid);
+
+        while (!toVisit.isEmpty()) {
+            List<Integer> childPIDs = children.get(toVisit.poll());
+            if (childPIDs != null) {
+                descendants.addAll(childPIDs);
+                toVisit.addAll(childPIDs);
+            }
+        }
+        return descendants;
+    }
+
+    // The arguments the process was started with, empty when they can not be read, which is always the case without /proc
+    public static List<String> getCommandLine(final int pid) {
+        if (pid == -1 || !isProcfsAvailable()) {
+            return Collections.emptyList();
+        }
+        try {
+            String commandLine = new String(Files.readAllBytes(new File(new File(PROC_DIR, String.valueOf(pid)), "cmdline").toPath()), StandardCharsets.UTF_8);
+            // Empty for a process that has exited but was not reaped yet
+            return commandLine.isEmpty() ? Collections.emptyList() : Arrays.asList(commandLine.split("\0"));
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    public static boolean isAlive(final int pid) {
+        if (pid == -1) {
+            return false;
+        }
+        if (HANDLE_OF_METHOD != null) {
+            Object handle = getHandle(pid);
+            try {
+                return handle != null && (Boolean) HANDLE_IS_ALIVE_METHOD.invoke(handle);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return false;
+            }
+        }
+        if (isProcfsAvailable()) {
+            return new File(PROC_DIR, String.valueOf(pid)).exists();
+        }
+        return getProcessTable().containsKey(pid);
+    }
+
+    public static CompletableFuture<Void> onTreeExit(final Process process, final Collection<Integer> pids) {
+        List<CompletableFuture<Void>> exits = new ArrayList<>();
+        if (process != null) {
+            exits.add(ProcessWatcher.onExit(process));
+        }
+        for (final int pid : pids) {
+            exits.add(ProcessWatcher.onExit(pid));
+        }
+        return CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Sends SIGTERM to the whole tree and escalates to SIGKILL for anything still alive after the timeout.
+    // Completes once every process has exited, or exceptionally with a ProcessesSurvivedException when some are
+    // still alive a while after being killed.
+    public static CompletableFuture<Void> terminate(final Process process, final Collection<Integer> knownPIDs) {
+        final int pid = process != null ? getPID(process) : -1;
+
+        // Known PIDs cover clients that were re-parented after their launcher exited
+        final Set<Integer> pids = new LinkedHashSet<>(knownPIDs);
+        pids.addAll(getDescendantPIDs(pid));
+
+        final CompletableFuture<Void> exited = onTreeExit(process, pids);
+        if (exited.isDone()) {
+            return exited;
+        }
+
+        signal(process, pid, pids, false);
+
+        final CompletableFuture<Void> terminated = new CompletableFuture<>();
+
+        ScheduledFuture<?> escalation = ProcessWatcher.schedule(() -> {
+            if (exited.isDone()) {
+                return;
+            }
+            System.out.println("Process tree of " + pid + " did not exit in time, killing it");
+            // Anything started since the first signal is killed as well
+            pids.addAll(getDescendantPIDs(pid));
+            signal(process, pid, pids, true);
+            ProcessWatcher.schedule(() -> {
+                if (!exited.isDone()) {
+                    terminated.completeExceptionally(new ProcessesSurvivedException(getAlivePIDs(process, pid, pids)));
+                }
+            }, KILL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }, TERMINATE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        exited.thenRun(() -> {
+            escalation.cancel(false);
+            terminated.complete(null);
+        });
+
+        return terminated;
+    }
+
+    // The PIDs a failed terminate() left running, empty for any other failure
+    public static List<Integer> getSurvivingPIDs(final Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof ProcessesSurvivedException ? ((ProcessesSurvivedException) cause).getPIDs() : Collections.emptyList();
+    }
+
+    private static List<Integer> getAlivePIDs(final Process process, final int pid, final Set<Integer> pids) {
+        List<Integer> alivePIDs = new ArrayList<>();
+        if (process != null && process.isAlive()) {
+            alivePIDs.add(pid);
+        }
+        for (final int descendantPID : pids) {
+            if (isAlive(descendantPID)) {
+                alivePIDs.add(descendantPID);
+            }
+        }
+        return alivePIDs;
+    }
+
+    private static void signal(final Process process, final int pid, final Set<Integer> descendantPIDs, final boolean force) {
+        if (HANDLE_OF_METHOD != null) {
+            // SIGTERM or SIGKILL on Unix, on Windows both end the process straight away
+            for (final int descendantPID : descendantPIDs) {
+                Object handle = getHandle(descendantPID);
+                if (handle != null) {
+                    try {
+                        (force ? HANDLE_DESTROY_FORCIBLY_METHOD : HANDLE_DESTROY_METHOD).invoke(handle);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } else {
+            runSignalCommand(pid, descendantPIDs, force);
+        }
+
+        if (process != null) {
+            if (force) {
+                process.destroyForcibly();
+            } else {
+                process.destroy();
+            }
+        }
+    }
+
+    private static void runSignalCommand(final int pid, final Set<Integer> descendantPIDs, final boolean force) {
+        List<String> command = new ArrayList<>();
+
+        if (WINDOWS) {
+            // /T takes the launcher's own tree, clients that outlived their launcher are named separately
+            Set<Integer> pids = new LinkedHashSet<>();
+            if (pid != -1) {
+                pids.add(pid);
+            }
+            pids.addAll(descendantPIDs);
+            for (final int killPID : pids) {
+                Collections.addAll(command, "/PID", String.valueOf(killPID));
+            }
+            if (!command.isEmpty()) {
+                command.add(0, "/T");
+                command.add(0, "taskkill");
+                if (force) {
+                    command.add("/F");
+                }
+            }
+        } else {
+            for (final int descendantPID : descendantPIDs) {
+                if (isAlive(descendantPID)) {
+                    command.add(String.valueOf(descendantPID));
+                }
+            }
+            if (!command.isEmpty()) {
+                command.add(0, force ? "-KILL" : "-TERM");
+                command.add(0, "kill");
+            }
+        }
+
+        if (!command.isEmpty()) {
+            try {
+                new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static Object getHandle(final int pid) {
+        try {
+            return ((Optional<?>) HANDLE_OF_METHOD.invoke(null, (long) pid)).orElse(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static int getHandlePID(final Object handle) {
+        try {
+            return ((Long) HANDLE_PID_METHOD.invoke(handle)).intValue();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static int getManagerPID() {
+        // "pid@hostname" on every JVM we run on
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        try {
+            return Integer.parseInt(name.substring(0, name.indexOf('@')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Set<Integer> getChildPIDs(final Map<Integer, Integer> processTable, final int parentPID) {
+        Set<Integer> childPIDs = new HashSet<>();
+        processTable.forEach((childPID, childParentPID) -> {
+            if (childParentPID == parentPID) {
+                childPIDs.add(childPID);
+            }
+        });
+        return childPIDs;
+    }
+
+    // The parent of every process, by PID
+    private static synchronized Map<Integer, Integer> getProcessTable() {
+        long now = System.currentTimeMillis();
+        if (processTable == null || now - processTableTime > PROCESS_TABLE_MAX_AGE_MS) {
+            processTable = listProcessTable();
+            processTableTime = now;
+        }
+        return processTable;
+    }
+
+    private static Map<Integer, Integer> listProcessTable() {
+        if (isProcfsAvailable()) {
+            return readProcfsTable();
+        }
+        if (WINDOWS) {
+            // wmic itself is left out, the start() diff would see it as a new child otherwise
+            return runListCommand("wmic", "process", "where", "name!='WMIC.exe'", "get", "ParentProcessId,ProcessId");
+        }
+        return runListCommand("ps", "-A", "-o", "ppid=", "-o", "pid=");
+    }
+
+    // Reads lines of "parent child", anything else such as a header is skipped
+    private static Map<Integer, Integer> runListCommand(final String... command) {
+        Map<Integer, Integer> table = new HashMap<>();
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            // wmic does not exit until its input is closed
+            process.getOutputStream().close();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.ISO_8859_1))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // wmic may write UTF-16, the digits survive once the NULs are gone
+                    String[] fields = line.replace("\0", "").trim().split("\\s+");
+                    if (fields.length == 2) {
+                        try {
+                            table.put(Integer.parseInt(fields[1]), Integer.parseInt(fields[0]));
+                        } catch (NumberFormatException e) {
+                            // Header
+                        }
+                    }
+                }
+            }
+            process.waitFor();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return table;
+    }
+
+    private static Map<Integer, Integer> readProcfsTable() {
+        Map<Integer, Integer> table = new HashMap<>();
+
+        String[] entries = PROC_DIR.list();
+        if (entries == null) {
+            return table;
+        }
+
+        for (final String entry : entries) {
+            if (entry.isEmpty() || !Character.isDigit(entry.charAt(0))) {
+                continue;
+            }
+            int parentPID = readParentPID(entry);
+            if (parentPID > 0) {
+                table.put(Integer.parseInt(entry), parentPID);
+            }
+        }
+        return table;
+    }
+
+    private static int readParentPID(final String pid) {
+        try {
+            String stat = new String(Files.readAllBytes(new File(new File(PROC_DIR, pid), "stat").toPath()), StandardCharsets.US_ASCII);
+
+            // The command name is wrapped in parentheses and may itself contain spaces or parentheses
+            int commandEnd = stat.lastIndexOf(')');
+            if (commandEnd == -1) {
+                return -1;
+            }
+            String[] fields = stat.substring(commandEnd + 2).split(" ");
+            return fields.length > 1 ? Integer.parseInt(fields[1]) : -1;
+        } catch (IOException | NumberFormatException e) {
+            // The process exited while we were scanning
+            return -1;
+        }
+    }
+}
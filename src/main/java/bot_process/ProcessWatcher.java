@@ -0,0 +1,81 @@
+package bot_process;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public final class ProcessWatcher {
+
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final List<WatchedProcess> watchedProcesses = new ArrayList<>();
+
+    static {
+        executor.scheduleWithFixedDelay(ProcessWatcher::poll, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private ProcessWatcher() {
+    }
+
+    public static CompletableFuture<Void> onExit(final Process process) {
+        return watch(process::isAlive);
+    }
+
+    public static CompletableFuture<Void> onExit(final int pid) {
+        return watch(() -> ProcessTree.isAlive(pid));
+    }
+
+    public static ScheduledFuture<?> schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        return executor.schedule(task, delay, unit);
+    }
+
+    private static CompletableFuture<Void> watch(final BooleanSupplier isAlive) {
+        if (!isAlive.getAsBoolean()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        WatchedProcess watchedProcess = new WatchedProcess(isAlive);
+        synchronized (watchedProcesses) {
+            watchedProcesses.add(watchedProcess);
+        }
+        return watchedProcess.exited;
+    }
+
+    private static void poll() {
+        List<WatchedProcess> exitedProcesses = new ArrayList<>();
+
+        synchronized (watchedProcesses) {
+            Iterator<WatchedProcess> iterator = watchedProcesses.iterator();
+            while (iterator.hasNext()) {
+                WatchedProcess watchedProcess = iterator.next();
+                if (watchedProcess.exited.isDone() || !watchedProcess.isAlive.getAsBoolean()) {
+                    iterator.remove();
+                    exitedProcesses.add(watchedProcess);
+                }
+            }
+        }
+
+        // Complete outside of the lock, callbacks are free to watch further processes
+        exitedProcesses.forEach(exitedProcess -> exitedProcess.exited.complete(null));
+    }
+
+    private static final class WatchedProcess {
+        private final BooleanSupplier isAlive;
+        private final CompletableFuture<Void> exited = new CompletableFuture<>();
+
+        private WatchedProcess(final BooleanSupplier isAlive) {
+            this.isAlive = isAlive;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package exceptions;
+
+public class CrashLoopException extends Exception {
+    public CrashLoopException(final String username, final int crashes) {
+        super(String.format("Stopped restarting %s after %d crashes in a row", username, crashes));
+    }
+}
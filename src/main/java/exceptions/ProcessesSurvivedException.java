@@ -0,0 +1,19 @@
+package exceptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ProcessesSurvivedException extends Exception {
+
+    private final List<Integer> pids;
+
+    public ProcessesSurvivedException(final List<Integer> pids) {
+        super("Processes still running after being killed: " + pids);
+        this.pids = Collections.unmodifiableList(new ArrayList<>(pids));
+    }
+
+    public List<Integer> getPIDs() {
+        return pids;
+    }
+}
@@ -2,35 +2,63 @@ package file_manager;
 
 import gui.dialogues.error_dialog.ExceptionDialog;
 import javafx.stage.FileChooser;
+import org.json.simple.JSONValue;
 import settings.Settings;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class SettingsFileManager {
 
     public static List<Object> loadSettings() {
 
-        final List<Object> objects = new ArrayList<>();
         try {
             final File file = getFileChooser().showOpenDialog(null);
 
-            if (file == null) return objects;
+            if (file == null) return new ArrayList<>();
+
+            return loadSettings(file);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            new ExceptionDialog(e).show();
+        }
+        return new ArrayList<>();
+    }
+
+    public static List<Object> loadSettings(final File file) throws IOException, ClassNotFoundException {
 
-            try (FileInputStream fileInputStream = new FileInputStream(file);
-                 ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
+        try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            inputStream.mark(SettingsFormat.MAGIC.length);
+            byte[] magic = new byte[SettingsFormat.MAGIC.length];
+            int read = inputStream.read(magic);
+            inputStream.reset();
 
-                Object object;
-                while ((object = objectInputStream.readObject()) != null) {
-                    objects.add(object);
-                }
+            if (read == magic.length && Arrays.equals(magic, SettingsFormat.MAGIC)) {
+                return SettingsFormat.read(inputStream);
+            }
+            return loadLegacySettings(inputStream);
+        }
+    }
+
+    // Files saved before the settings format, with Java serialization
+    private static List<Object> loadLegacySettings(final InputStream inputStream) throws IOException, ClassNotFoundException {
+
+        final List<Object> objects = new ArrayList<>();
+
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(inputStream)) {
+
+            Object object;
+            while ((object = objectInputStream.readObject()) != null) {
+                objects.add(object);
             }
         } catch (final EOFException e) {
             System.out.println("Config file read successfully.");
-        } catch (final Exception e) {
-            e.printStackTrace();
-            new ExceptionDialog(e).show();
         }
         return objects;
     }
@@ -42,27 +70,59 @@ public final class SettingsFileManager {
 
             if (file == null) return;
 
-            if (!file.exists() && !file.createNewFile()) {
-                new ExceptionDialog(new Exception("Failed to save settings")).showAndWait();
-                return;
-            }
+            saveSettings(objects, file);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            new ExceptionDialog(e).show();
+        }
+    }
 
-            try (FileOutputStream fileOutputStream = new FileOutputStream(file);
-                 ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
-                for (final Serializable object : objects) {
-                    objectOutputStream.writeObject(object);
-                }
+    // Written to a temporary file first, so a failed or interrupted save leaves the previous settings as they were
+    public static void saveSettings(final List<?> objects, final File file) throws IOException {
+        Path path = file.getAbsoluteFile().toPath();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempPath)) {
+            SettingsFormat.write(objects, outputStream);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException deleteException) {
+                e.addSuppressed(deleteException);
             }
+            throw e;
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The same settings as JSON, for reading or editing them outside the manager
+    public static void exportSettings(final List<?> objects) {
+        try {
+
+            final File file = getFileChooser("JSON files (*.json)", "*.json").showSaveDialog(null);
+
+            if (file == null) return;
+
+            exportSettings(objects, file);
         } catch (final Exception e) {
             e.printStackTrace();
             new ExceptionDialog(e).show();
         }
     }
 
+    public static void exportSettings(final List<?> objects, final File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            JSONValue.writeJSONString(SettingsFormat.toJSON(objects), writer);
+        }
+    }
+
     private static FileChooser getFileChooser() {
+        return getFileChooser("Config files (*.config)", "*.config");
+    }
+
+    private static FileChooser getFileChooser(final String description, final String extension) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Explv's OSBot Manager");
-        FileChooser.ExtensionFilter extensionFilter = new FileChooser.ExtensionFilter("Config files (*.config)", "*.config");
+        FileChooser.ExtensionFilter extensionFilter = new FileChooser.ExtensionFilter(description, extension);
         fileChooser.getExtensionFilters().add(extensionFilter);
         fileChooser.setInitialDirectory(new File(Settings.CONFIG_DIR));
         return fileChooser;
@@ -0,0 +1,675 @@
+package file_manager;
+
+import bot_parameters.account.RunescapeAccount;
+import bot_parameters.configuration.Configuration;
+import bot_parameters.configuration.WorldRule;
+import bot_parameters.configuration.WorldSelection;
+import bot_parameters.proxy.Proxy;
+import bot_parameters.proxy.SecuredProxy;
+import bot_parameters.script.Script;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.json.simple.JSONArray;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+// The settings file: a magic number and version, then one section per kind of object.
+// Each section starts with its schema, the name and type of every field, followed by its records with the values in
+// that order. Fields a reader does not know are skipped and fields missing from a file keep their defaults, so fields
+// can be added without a new version. Accounts, proxies, scripts and world selections are stored once, configurations
+// refer to them by their index in their section. The same schema is used for the JSON export.
+final class SettingsFormat {
+
+    static final byte[] MAGIC = {'E', 'O', 'M', 'S'};
+    static final int VERSION = 1;
+
+    private enum FieldType {
+        BOOLEAN, INT, STRING, REFERENCE, REFERENCES, INTS
+    }
+
+    private static final class Field<T> {
+        private final String name;
+        private final FieldType type;
+        // The section referenced objects are in, for reference fields
+        private final String section;
+        private final Function<T, Object> getter;
+
+        private Field(final String name, final FieldType type, final String section, final Function<T, Object> getter) {
+            this.name = name;
+            this.type = type;
+            this.section = section;
+            this.getter = getter;
+        }
+    }
+
+    private interface Factory<T> {
+        T create(Record record);
+    }
+
+    private static final class Section<T> {
+        private final String name;
+        private final Class<T> type;
+        private final List<Field<T>> fields = new ArrayList<>();
+        private final Map<String, Integer> fieldIndices = new HashMap<>();
+        private Factory<T> factory;
+
+        private Section(final String name, final Class<T> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        private Section<T> field(final String name, final FieldType type, final Function<T, Object> getter) {
+            return field(name, type, null, getter);
+        }
+
+        private Section<T> field(final String name, final FieldType type, final String section, final Function<T, Object> getter) {
+            fieldIndices.put(name, fields.size());
+            fields.add(new Field<>(name, type, section, getter));
+            return this;
+        }
+
+        private Section<T> factory(final Factory<T> factory) {
+            this.factory = factory;
+            return this;
+        }
+    }
+
+    // Objects only referenced by configurations are stored too, but are not listed when the file is loaded
+    private static final String LISTED = "listed";
+
+    private static final Section<RunescapeAccount> ACCOUNTS = new Section<>("accounts", RunescapeAccount.class)
+            .field("username", FieldType.STRING, RunescapeAccount::getUsername)
+            .field("password", FieldType.STRING, RunescapeAccount::getPassword)
+            .field("pin", FieldType.INT, RunescapeAccount::getPin)
+            .field("banned", FieldType.BOOLEAN, RunescapeAccount::isBanned)
+            .factory(record -> {
+                RunescapeAccount account = new RunescapeAccount(record.getString("username", ""), record.getString("password", ""), record.getInt("pin", -1));
+                account.setBanned(record.getBoolean("banned", false));
+                return account;
+            });
+
+    private static final Section<Proxy> PROXIES = new Section<>("proxies", Proxy.class)
+            .field("ip", FieldType.STRING, Proxy::getIpAddress)
+            .field("port", FieldType.INT, Proxy::getPort)
+            .field("nickname", FieldType.STRING, Proxy::getNickname)
+            .field("username", FieldType.STRING, proxy -> proxy instanceof SecuredProxy ? ((SecuredProxy) proxy).getUsername() : null)
+            .field("password", FieldType.STRING, proxy -> proxy instanceof SecuredProxy ? ((SecuredProxy) proxy).getPassword() : null)
+            .factory(record -> {
+                String username = record.getString("username", null);
+                if (username != null) {
+                    return new SecuredProxy(record.getString("ip", ""), record.getInt("port", 0), username,
+                            record.getString("password", ""), record.getString("nickname", ""));
+                }
+                return new Proxy(record.getString("ip", ""), record.getInt("port", 0), record.getString("nickname", ""));
+            });
+
+    private static final Section<Script> SCRIPTS = new Section<>("scripts", Script.class)
+            .field("identifier", FieldType.STRING, Script::getScriptIdentifier)
+            .field("parameters", FieldType.STRING, Script::getParameters)
+            .field("local", FieldType.BOOLEAN, Script::isLocal)
+            .field("nickname", FieldType.STRING, Script::getNickname)
+            .factory(record -> new Script(record.getString("identifier", ""), record.getString("parameters", ""),
+                    record.getBoolean("local", false), record.getString("nickname", "")));
+
+    private static final Section<WorldSelection> WORLD_SELECTIONS = new Section<>("worldSelections", WorldSelection.class)
+            .field("worlds", FieldType.INTS, WorldSelection::getNumbers)
+            .field("membersWorlds", FieldType.INTS, WorldSelection::getMembersNumbers)
+            .factory(record -> WorldSelection.of(record.getInts("worlds"), record.getInts("membersWorlds")));
+
+    private static final Section<Configuration> CONFIGURATIONS = new Section<>("configurations", Configuration.class)
+            .field("account", FieldType.REFERENCE, ACCOUNTS.name, Configuration::getRunescapeAccount)
+            .field("scripts", FieldType.REFERENCES, SCRIPTS.name, Configuration::getScripts)
+            .field("proxy", FieldType.REFERENCE, PROXIES.name, Configuration::getProxy)
+            .field("worlds", FieldType.REFERENCE, WORLD_SELECTIONS.name, Configuration::getWorlds)
+            .field("worldRule", FieldType.INTS, configuration -> {
+                WorldRule rule = configuration.getWorldRule();
+                return rule != null ? new int[]{rule.getRequired(), rule.getExcluded(), rule.getRegions()} : null;
+            })
+            .field("memoryAllocation", FieldType.INT, Configuration::getMemoryAllocation)
+            .field("jvmProfile", FieldType.STRING, Configuration::getJvmProfile)
+            .field("collectData", FieldType.BOOLEAN, Configuration::isCollectData)
+            .field("debugMode", FieldType.BOOLEAN, Configuration::isDebugMode)
+            .field("debugPort", FieldType.INT, Configuration::getDebugPort)
+            .field("lowCpuMode", FieldType.BOOLEAN, Configuration::isLowCpuMode)
+            .field("lowResourceMode", FieldType.BOOLEAN, Configuration::isLowResourceMode)
+            .field("reflection", FieldType.BOOLEAN, Configuration::isReflection)
+            .field("noRandoms", FieldType.BOOLEAN, Configuration::isNoRandoms)
+            .field("noInterface", FieldType.BOOLEAN, Configuration::isNoInterface)
+            .field("noRender", FieldType.BOOLEAN, Configuration::isNoRender)
+            .field("dismissRandoms", FieldType.BOOLEAN, Configuration::isDismissRandoms)
+            .field("newMouse", FieldType.BOOLEAN, Configuration::isNewMouse)
+            .field("enableBreaks", FieldType.BOOLEAN, Configuration::isEnableBreaks)
+            .field("stopAfterBreak", FieldType.BOOLEAN, Configuration::isStopAfterBreak)
+            .field("mirrorMode", FieldType.BOOLEAN, Configuration::isMirrorMode)
+            .field("launchGame", FieldType.BOOLEAN, Configuration::isLaunchGame)
+            .field("closeClient", FieldType.BOOLEAN, Configuration::isCloseClient)
+            .field("restartOnCrash", FieldType.BOOLEAN, Configuration::isRestartOnCrash)
+            .field("logFile", FieldType.STRING, Configuration::getLogFileName)
+            .factory(record -> {
+                String logFile = record.getString("logFile", null);
+                ObservableList<Script> scripts = FXCollections.observableArrayList(record.<Script>getReferences("scripts"));
+                Configuration configuration = logFile != null
+                        ? new Configuration(record.getReference("account"), scripts, logFile)
+                        : new Configuration(record.getReference("account"), scripts);
+                configuration.setProxy(record.getReference("proxy"));
+                WorldSelection worlds = record.getReference("worlds");
+                configuration.setWorlds(worlds != null ? worlds : WorldSelection.empty());
+                int[] worldRule = record.getInts("worldRule");
+                if (worldRule != null && worldRule.length == 3) {
+                    configuration.setWorldRule(new WorldRule(worldRule[0], worldRule[1], worldRule[2]));
+                }
+                configuration.setMemoryAllocation(record.getInt("memoryAllocation", -1));
+                configuration.setJvmProfile(record.getString("jvmProfile", configuration.getJvmProfile()));
+                configuration.setCollectData(record.getBoolean("collectData", false));
+                configuration.setDebugMode(record.getBoolean("debugMode", false));
+                configuration.setDebugPort(record.getInt("debugPort", -1));
+                configuration.setLowCpuMode(record.getBoolean("lowCpuMode", false));
+                configuration.setLowResourceMode(record.getBoolean("lowResourceMode", false));
+                configuration.setReflection(record.getBoolean("reflection", false));
+                configuration.setNoRandoms(record.getBoolean("noRandoms", false));
+                configuration.setNoInterface(record.getBoolean("noInterface", false));
+                configuration.setNoRender(record.getBoolean("noRender", false));
+                configuration.setDismissRandoms(record.getBoolean("dismissRandoms", false));
+                configuration.setNewMouse(record.getBoolean("newMouse", false));
+                configuration.setEnableBreaks(record.getBoolean("enableBreaks", false));
+                configuration.setStopAfterBreak(record.getBoolean("stopAfterBreak", false));
+                configuration.setMirrorMode(record.getBoolean("mirrorMode", false));
+                configuration.setLaunchGame(record.getBoolean("launchGame", false));
+                configuration.setCloseClient(record.getBoolean("closeClient", false));
+                configuration.setRestartOnCrash(record.getBoolean("restartOnCrash", false));
+                return configuration;
+            });
+
+    // In the order they are written, a section only refers to the ones before it
+    private static final List<Section<?>> SECTIONS = Arrays.asList(ACCOUNTS, PROXIES, SCRIPTS, WORLD_SELECTIONS, CONFIGURATIONS);
+
+    private SettingsFormat() {
+    }
+
+    // The values of one record, by the reader's own field order
+    private static final class Record {
+        private final Section<?> section;
+        private final Object[] values;
+
+        private Record(final Section<?> section) {
+            this.section = section;
+            this.values = new Object[section.fields.size()];
+        }
+
+        private Object get(final String name) {
+            return values[section.fieldIndices.get(name)];
+        }
+
+        private boolean getBoolean(final String name, final boolean defaultValue) {
+            Object value = get(name);
+            return value != null ? (Boolean) value : defaultValue;
+        }
+
+        private int getInt(final String name, final int defaultValue) {
+            Object value = get(name);
+            return value != null ? (Integer) value : defaultValue;
+        }
+
+        private String getString(final String name, final String defaultValue) {
+            Object value = get(name);
+            return value != null ? (String) value : defaultValue;
+        }
+
+        private int[] getInts(final String name) {
+            Object value = get(name);
+            return value != null ? (int[]) value : new int[0];
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T getReference(final String name) {
+            Object value = get(name);
+            return value != null ? (T) value : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> List<T> getReferences(final String name) {
+            Object value = get(name);
+            return value != null ? (List<T>) value : new ArrayList<>();
+        }
+    }
+
+    // Every object of a section, the listed ones first, with the index configurations refer to it by
+    private static final class Table {
+        private final List<Object> objects = new ArrayList<>();
+        private final Map<Object, Integer> indices = new IdentityHashMap<>();
+        private int listedCount;
+
+        private void add(final Object object) {
+            if (object != null && !indices.containsKey(object)) {
+                indices.put(object, objects.size());
+                objects.add(object);
+            }
+        }
+
+        private int indexOf(final Object object) {
+            Integer index = object != null ? indices.get(object) : null;
+            return index != null ? index : -1;
+        }
+    }
+
+    static void write(final List<?> objects, final OutputStream outputStream) throws IOException {
+        Map<String, Table> tables = getTables(objects);
+
+        Output out = new Output(outputStream);
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(SECTIONS.size());
+        for (final Section<?> section : SECTIONS) {
+            writeSection(section, tables.get(section.name), tables, out);
+        }
+        out.flush();
+    }
+
+    private static <T> void writeSection(final Section<T> section, final Table table, final Map<String, Table> tables,
+                                         final Output out) throws IOException {
+        boolean hasListed = section != WORLD_SELECTIONS && section != CONFIGURATIONS;
+
+        writeString(out, section.name);
+        out.writeShort(section.fields.size() + (hasListed ? 1 : 0));
+        for (final Field<T> field : section.fields) {
+            writeString(out, field.name);
+            out.writeByte(field.type.ordinal());
+        }
+        if (hasListed) {
+            writeString(out, LISTED);
+            out.writeByte(FieldType.BOOLEAN.ordinal());
+        }
+
+        out.writeInt(table.objects.size());
+        for (int i = 0; i < table.objects.size(); i++) {
+            T object = section.type.cast(table.objects.get(i));
+            for (final Field<T> field : section.fields) {
+                writeValue(out, field, field.getter.apply(object), tables);
+            }
+            if (hasListed) {
+                out.writeBoolean(i < table.listedCount);
+            }
+        }
+    }
+
+    private static void writeValue(final Output out, final Field<?> field, final Object value, final Map<String, Table> tables) throws IOException {
+        switch (field.type) {
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case INT:
+                out.writeInt(value != null ? (Integer) value : -1);
+                break;
+            case STRING:
+                writeString(out, (String) value);
+                break;
+            case REFERENCE:
+                out.writeInt(tables.get(field.section).indexOf(value));
+                break;
+            case REFERENCES:
+                Collection<?> references = (Collection<?>) value;
+                out.writeInt(references.size());
+                for (final Object reference : references) {
+                    out.writeInt(tables.get(field.section).indexOf(reference));
+                }
+                break;
+            case INTS:
+                int[] ints = (int[]) value;
+                out.writeInt(ints != null ? ints.length : -1);
+                if (ints != null) {
+                    for (final int i : ints) {
+                        out.writeInt(i);
+                    }
+                }
+                break;
+        }
+    }
+
+    // The listed objects, in the order they were saved
+    static List<Object> read(final InputStream inputStream) throws IOException {
+        Input in = new Input(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a settings file");
+        }
+        int version = in.readUnsignedShort();
+        if (version > VERSION) {
+            throw new IOException("Settings file version " + version + " is newer than this manager supports, please update");
+        }
+
+        Map<String, List<Object>> tables = new HashMap<>();
+        List<Object> listedObjects = new ArrayList<>();
+        int sectionCount = in.readUnsignedShort();
+        for (int i = 0; i < sectionCount; i++) {
+            readSection(in, tables, listedObjects);
+        }
+        return listedObjects;
+    }
+
+    private static void readSection(final Input in, final Map<String, List<Object>> tables, final List<Object> listedObjects) throws IOException {
+        String name = readString(in);
+        Section<?> section = SECTIONS.stream().filter(s -> s.name.equals(name)).findFirst().orElse(null);
+
+        int fieldCount = in.readUnsignedShort();
+        FieldType[] fileTypes = new FieldType[fieldCount];
+        String[] fileSections = new String[fieldCount];
+        // Where each field of the file goes in a record, -1 for fields this reader does not know
+        int[] fieldIndices = new int[fieldCount];
+        int listedIndex = -1;
+        for (int i = 0; i < fieldCount; i++) {
+            String fieldName = readString(in);
+            int typeOrdinal = in.readUnsignedByte();
+            if (typeOrdinal >= FieldType.values().length) {
+                throw new IOException("Unknown field type " + typeOrdinal + " of " + name + "." + fieldName);
+            }
+            fileTypes[i] = FieldType.values()[typeOrdinal];
+            Integer index = section != null ? section.fieldIndices.get(fieldName) : null;
+            fieldIndices[i] = index != null && section.fields.get(index).type == fileTypes[i] ? index : -1;
+            fileSections[i] = fieldIndices[i] != -1 ? section.fields.get(index).section : null;
+            if (fieldName.equals(LISTED) && fileTypes[i] == FieldType.BOOLEAN) {
+                listedIndex = i;
+            }
+        }
+
+        int recordCount = in.readInt();
+        List<Object> table = new ArrayList<>(section != null ? recordCount : 0);
+        for (int r = 0; r < recordCount; r++) {
+            Record record = section != null ? new Record(section) : null;
+            boolean listed = true;
+            for (int i = 0; i < fieldCount; i++) {
+                Object value = readValue(in, fileTypes[i], fileSections[i], tables);
+                if (i == listedIndex) {
+                    listed = (Boolean) value;
+                } else if (fieldIndices[i] != -1) {
+                    record.values[fieldIndices[i]] = value;
+                }
+            }
+            if (section != null) {
+                Object object = section.factory.create(record);
+                table.add(object);
+                if (listed && section != WORLD_SELECTIONS) {
+                    listedObjects.add(object);
+                }
+            }
+        }
+        if (section != null) {
+            tables.put(section.name, table);
+        }
+    }
+
+    private static Object readValue(final Input in, final FieldType type, final String section,
+                                    final Map<String, List<Object>> tables) throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                return in.readBoolean();
+            case INT:
+                return in.readInt();
+            case STRING:
+                return readString(in);
+            case REFERENCE:
+                return resolve(tables, section, in.readInt());
+            case REFERENCES:
+                int count = in.readInt();
+                List<Object> references = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    Object reference = resolve(tables, section, in.readInt());
+                    if (reference != null) {
+                        references.add(reference);
+                    }
+                }
+                return references;
+            case INTS:
+                int length = in.readInt();
+                if (length < 0) {
+                    return null;
+                }
+                int[] ints = new int[length];
+                for (int i = 0; i < length; i++) {
+                    ints[i] = in.readInt();
+                }
+                return ints;
+            default:
+                throw new IOException("Unknown field type " + type);
+        }
+    }
+
+    private static Object resolve(final Map<String, List<Object>> tables, final String section, final int index) throws IOException {
+        if (section == null || index < 0) {
+            return null;
+        }
+        List<Object> table = tables.get(section);
+        if (table == null || index >= table.size()) {
+            throw new IOException("Reference to missing " + section + " " + index);
+        }
+        return table.get(index);
+    }
+
+    // Keys in schema order, written with JSONValue
+    static Map<String, Object> toJSON(final List<?> objects) {
+        Map<String, Table> tables = getTables(objects);
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("version", VERSION);
+        for (final Section<?> section : SECTIONS) {
+            json.put(section.name, toJSON(section, tables.get(section.name), tables));
+        }
+        return json;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> JSONArray toJSON(final Section<T> section, final Table table, final Map<String, Table> tables) {
+        JSONArray records = new JSONArray();
+        for (int i = 0; i < table.objects.size(); i++) {
+            T object = section.type.cast(table.objects.get(i));
+            Map<String, Object> record = new LinkedHashMap<>();
+            for (final Field<T> field : section.fields) {
+                Object value = field.getter.apply(object);
+                if (field.type == FieldType.REFERENCE) {
+                    int index = tables.get(field.section).indexOf(value);
+                    value = index != -1 ? index : null;
+                } else if (field.type == FieldType.REFERENCES) {
+                    JSONArray indices = new JSONArray();
+                    for (final Object reference : (Collection<?>) value) {
+                        indices.add(tables.get(field.section).indexOf(reference));
+                    }
+                    value = indices;
+                } else if (field.type == FieldType.INTS && value != null) {
+                    JSONArray ints = new JSONArray();
+                    for (final int number : (int[]) value) {
+                        ints.add(number);
+                    }
+                    value = ints;
+                }
+                record.put(field.name, value);
+            }
+            if (section != WORLD_SELECTIONS && section != CONFIGURATIONS) {
+                record.put(LISTED, i < table.listedCount);
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static Map<String, Table> getTables(final List<?> objects) {
+        Map<String, Table> tables = new HashMap<>();
+        for (final Section<?> section : SECTIONS) {
+            tables.put(section.name, new Table());
+        }
+
+        for (final Object object : objects) {
+            for (final Section<?> section : SECTIONS) {
+                if (section.type.isInstance(object)) {
+                    tables.get(section.name).add(object);
+                    break;
+                }
+            }
+        }
+        for (final Table table : tables.values()) {
+            table.listedCount = table.objects.size();
+        }
+
+        // Whatever configurations use, whether or not it is still in its tab
+        for (final Object object : tables.get(CONFIGURATIONS.name).objects) {
+            Configuration configuration = (Configuration) object;
+            tables.get(ACCOUNTS.name).add(configuration.getRunescapeAccount());
+            tables.get(PROXIES.name).add(configuration.getProxy());
+            configuration.getScripts().forEach(tables.get(SCRIPTS.name)::add);
+            tables.get(WORLD_SELECTIONS.name).add(configuration.getWorlds());
+        }
+        return tables;
+    }
+
+    // Buffered without the synchronized calls of Buffered and Data streams, which are made once per byte of an int
+    private static final class Output {
+        private final OutputStream outputStream;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+
+        private Output(final OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void writeBoolean(final boolean value) throws IOException {
+            writeByte(value ? 1 : 0);
+        }
+
+        private void writeByte(final int value) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeShort(final int value) throws IOException {
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        private void writeInt(final int value) throws IOException {
+            if (buffer.length - position < 4) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void write(final byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                flushBuffer();
+                if (bytes.length > buffer.length) {
+                    outputStream.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void flushBuffer() throws IOException {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        private void flush() throws IOException {
+            flushBuffer();
+            outputStream.flush();
+        }
+    }
+
+    private static final class Input {
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+
+        private Input(final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        // Makes the next count bytes, at most the buffer's size, available from position
+        private void require(final int count) throws IOException {
+            if (limit - position >= count) {
+                return;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < count) {
+                int read = inputStream.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    throw new EOFException("Settings file is truncated");
+                }
+                limit += read;
+            }
+        }
+
+        private boolean readBoolean() throws IOException {
+            return readUnsignedByte() != 0;
+        }
+
+        private int readUnsignedByte() throws IOException {
+            require(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readUnsignedShort() throws IOException {
+            require(2);
+            int value = (buffer[position] & 0xFF) << 8 | buffer[position + 1] & 0xFF;
+            position += 2;
+            return value;
+        }
+
+        private int readInt() throws IOException {
+            require(4);
+            int value = buffer[position] << 24 | (buffer[position + 1] & 0xFF) << 16
+                    | (buffer[position + 2] & 0xFF) << 8 | buffer[position + 3] & 0xFF;
+            position += 4;
+            return value;
+        }
+
+        private void readFully(final byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                require(1);
+                int count = Math.min(bytes.length - offset, limit - position);
+                System.arraycopy(buffer, position, bytes, offset, count);
+                position += count;
+                offset += count;
+            }
+        }
+
+        // Decoded straight from the buffer when it fits
+        private String readString(final int length) throws IOException {
+            if (length > buffer.length) {
+                byte[] bytes = new byte[length];
+                readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            require(length);
+            String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+    }
+
+    private static void writeString(final Output out, final String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final Input in) throws IOException {
+        int length = in.readInt();
+        return length >= 0 ? in.readString(length) : null;
+    }
+}
@@ -56,6 +56,10 @@ public class ManagerPane extends BorderPane {
         loadButton.setContentDisplay(ContentDisplay.LEFT);
         topToolBar.getChildren().add(loadButton);
 
+        Button exportButton = new ToolbarButton("Export", "save_icon.png", "save_icon_blue.png");
+        exportButton.setContentDisplay(ContentDisplay.LEFT);
+        topToolBar.getChildren().add(exportButton);
+
         setTop(topToolBar);
 
         TableTab<RunescapeAccount> runescapeAccountTab = new RunescapeAccountTab();
@@ -77,6 +81,15 @@ public class ManagerPane extends BorderPane {
             SettingsFileManager.saveSettings(objects);
         });
 
+        exportButton.setOnAction(event -> {
+            List<Serializable> objects = new ArrayList<>();
+            objects.addAll(runescapeAccountTab.getTableView().getItems());
+            objects.addAll(proxyTab.getTableView().getItems());
+            objects.addAll(scriptTab.getTableView().getItems());
+            objects.addAll(runTab.getTableView().getItems());
+            SettingsFileManager.exportSettings(objects);
+        });
+
         loadButton.setOnAction(event -> {
             runescapeAccountTab.getTableView().getItems().clear();
             proxyTab.getTableView().getItems().clear();
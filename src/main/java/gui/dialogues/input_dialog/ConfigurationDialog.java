@@ -2,6 +2,7 @@ package gui.dialogues.input_dialog;
 
 import bot_parameters.account.RunescapeAccount;
 import bot_parameters.configuration.Configuration;
+import bot_parameters.configuration.JVMProfile;
 import bot_parameters.configuration.World;
 import bot_parameters.proxy.Proxy;
 import bot_parameters.script.Script;
@@ -13,8 +14,8 @@ import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.FlowPane;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public final class ConfigurationDialog extends InputDialog<Configuration> {
 
@@ -23,6 +24,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
     private final ListView<Script> selectedScripts;
     private final ChoiceBox<Proxy> proxySelector;
     private final TextField memoryAllocation;
+    private final ChoiceBox<String> jvmProfileSelector;
     private final CheckBox collectData;
     private final CheckBox debugMode;
     private final TextField debugPort;
@@ -39,6 +41,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
     private final CheckBox mirrorMode;
     private final CheckBox launchGame;
     private final CheckBox closeClient;
+    private final CheckBox restartOnCrash;
 
     private final WorldSelectorDialog worldSelectorDialog;
 
@@ -93,6 +96,15 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         memoryAllocation.setTextFormatter(new TextFormatter<>(change -> change.getText().matches("\\d*") ? change : null));
         contentBox.getChildren().add(new FlowPane(10, 10, new Label("Memory:"), memoryAllocation));
 
+        jvmProfileSelector = new ChoiceBox<>();
+        jvmProfileSelector.setOnShowing(e -> updateJvmProfiles());
+        updateJvmProfiles();
+        jvmProfileSelector.setValue(JVMProfile.DEFAULT_PROFILE_NAME);
+        jvmProfileSelector.setTooltip(new Tooltip("The options are given to the java process started with the OSBot jar.\n"
+                + "If the OSBot launcher starts the client in a JVM of its own, they do not reach it.\n"
+                + "On Linux the manager checks once the client has loaded, and prints a warning when they are missing."));
+        contentBox.getChildren().add(new FlowPane(10, 10, new Label("JVM profile:"), jvmProfileSelector));
+
         collectData = new CheckBox("Allow data collection");
         contentBox.getChildren().add(collectData);
 
@@ -135,6 +147,9 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         closeClient = new CheckBox("Close Client After Script Stop");
         contentBox.getChildren().add(new FlowPane(10,10, closeClient));
 
+        restartOnCrash = new CheckBox("Restart On Crash");
+        contentBox.getChildren().add(new FlowPane(10, 10, restartOnCrash));
+
 
         selectedScripts.setOnKeyPressed(e -> {
             if (e.getCode() == KeyCode.DELETE) {
@@ -158,6 +173,22 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         Platform.runLater(accountSelector::requestFocus);
     }
 
+    // Profiles can be added to the profiles file while the manager is running
+    private void updateJvmProfiles() {
+        String selectedProfile = jvmProfileSelector.getValue();
+        List<String> profileNames = JVMProfile.getProfiles().stream().map(JVMProfile::getName).collect(Collectors.toList());
+        if (selectedProfile != null && !profileNames.contains(selectedProfile)) {
+            profileNames.add(selectedProfile);
+        }
+        jvmProfileSelector.getItems().setAll(profileNames);
+        jvmProfileSelector.setValue(selectedProfile);
+    }
+
+    private String getSelectedJvmProfile() {
+        String selectedProfile = jvmProfileSelector.getValue();
+        return selectedProfile != null ? selectedProfile : JVMProfile.DEFAULT_PROFILE_NAME;
+    }
+
     @Override
     public void setValues(final Configuration existingItem) {
         if (existingItem == null) {
@@ -165,6 +196,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
             scriptSelector.setValue(null);
             proxySelector.setValue(null);
             memoryAllocation.setText("");
+            jvmProfileSelector.setValue(JVMProfile.DEFAULT_PROFILE_NAME);
             collectData.setSelected(false);
             debugMode.setSelected(false);
             debugPort.setText("");
@@ -182,12 +214,15 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
             mirrorMode.setSelected(false);
             launchGame.setSelected(false);
             closeClient.setSelected(false);
+            restartOnCrash.setSelected(false);
             return;
         }
         accountSelector.setValue(existingItem.getRunescapeAccount());
         selectedScripts.setItems(existingItem.getScripts());
         proxySelector.setValue(existingItem.getProxy());
         memoryAllocation.setText(String.valueOf(existingItem.getMemoryAllocation()));
+        updateJvmProfiles();
+        jvmProfileSelector.setValue(existingItem.getJvmProfile());
         collectData.setSelected(existingItem.isCollectData());
         debugMode.setSelected(existingItem.isDebugMode());
         debugPort.setText(String.valueOf(existingItem.getDebugPort()));
@@ -196,6 +231,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         enableReflection.setSelected(existingItem.isReflection());
         noRandoms.setSelected(existingItem.isNoRandoms());
         worldSelectorDialog.setSelectedWorlds(existingItem.getWorlds());
+        worldSelectorDialog.setWorldRule(existingItem.getWorldRule());
         noInterface.setSelected(existingItem.isNoInterface());
         noRender.setSelected(existingItem.isNoRender());
         dismissRandoms.setSelected(existingItem.isDismissRandoms());
@@ -205,6 +241,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         mirrorMode.setSelected(existingItem.isMirrorMode());
         launchGame.setSelected(existingItem.isLaunchGame());
         closeClient.setSelected(existingItem.isCloseClient());
+        restartOnCrash.setSelected(existingItem.isRestartOnCrash());
         okButton.setDisable(accountSelector.getSelectionModel().getSelectedItem() == null || selectedScripts.getItems().size() == 0);
     }
 
@@ -221,12 +258,14 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
             configuration.setDebugMode(true);
             configuration.setDebugPort(Integer.parseInt(debugPort.getText().trim()));
         }
+        configuration.setJvmProfile(getSelectedJvmProfile());
         configuration.setCollectData(collectData.isSelected());
         configuration.setLowCpuMode(lowCpuMode.isSelected());
         configuration.setLowResourceMode(lowResourceMode.isSelected());
         configuration.setReflection(enableReflection.isSelected());
         configuration.setNoRandoms(noRandoms.isSelected());
-        configuration.setWorlds(new ArrayList<>(worldSelectorDialog.getSelectedWorlds()));
+        configuration.setWorlds(worldSelectorDialog.getSelection());
+        configuration.setWorldRule(worldSelectorDialog.getWorldRule());
         configuration.setNoInterface(noInterface.isSelected());
         configuration.setNoRender(noRender.isSelected());
         configuration.setDismissRandoms(dismissRandoms.isSelected());
@@ -236,6 +275,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         configuration.setMirrorMode(mirrorMode.isSelected());
         configuration.setLaunchGame(launchGame.isSelected());
         configuration.setCloseClient(closeClient.isSelected());
+        configuration.setRestartOnCrash(restartOnCrash.isSelected());
 
         return configuration;
     }
@@ -257,12 +297,14 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
             existingItem.setDebugMode(false);
             existingItem.setDebugPort(-1);
         }
+        existingItem.setJvmProfile(getSelectedJvmProfile());
         existingItem.setCollectData(collectData.isSelected());
         existingItem.setLowCpuMode(lowCpuMode.isSelected());
         existingItem.setLowResourceMode(lowResourceMode.isSelected());
         existingItem.setReflection(enableReflection.isSelected());
         existingItem.setNoRandoms(noRandoms.isSelected());
-        existingItem.setWorlds(new ArrayList<>(worldSelectorDialog.getSelectedWorlds()));
+        existingItem.setWorlds(worldSelectorDialog.getSelection());
+        existingItem.setWorldRule(worldSelectorDialog.getWorldRule());
         existingItem.setNoInterface(noInterface.isSelected());
         existingItem.setNoRender(noRender.isSelected());
         existingItem.setDismissRandoms(dismissRandoms.isSelected());
@@ -272,6 +314,7 @@ public final class ConfigurationDialog extends InputDialog<Configuration> {
         existingItem.setMirrorMode(mirrorMode.isSelected());
         existingItem.setLaunchGame(launchGame.isSelected());
         existingItem.setCloseClient(closeClient.isSelected());
+        existingItem.setRestartOnCrash(restartOnCrash.isSelected());
 
         return existingItem;
     }
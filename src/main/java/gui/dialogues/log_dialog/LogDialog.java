@@ -0,0 +1,103 @@
+package gui.dialogues.log_dialog;
+
+import bot_parameters.configuration.Configuration;
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.*;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+public class LogDialog extends Dialog<Void> {
+
+    public LogDialog(final Configuration configuration) throws IOException {
+        setTitle(configuration.getRunescapeAccount().getUsername() + " - Log");
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        setResizable(true);
+        initModality(Modality.NONE);
+
+        final Queue<String> pendingLines = new ConcurrentLinkedQueue<>();
+        final Consumer<String> outputListener = pendingLines::add;
+
+        LogLineList logLines = new LogLineList(configuration.subscribeToLogFile(outputListener));
+
+        // Only the visible rows are turned into cells, so the size of the log does not matter
+        ListView<String> listView = new ListView<>(logLines);
+        listView.setFixedCellSize(24);
+        listView.setPrefSize(800, 500);
+        listView.setPlaceholder(new Label("Reading log file..."));
+        VBox.setVgrow(listView, Priority.ALWAYS);
+
+        CheckBox followOutputCheckBox = new CheckBox("Follow output");
+        followOutputCheckBox.setSelected(true);
+
+        getDialogPane().setContent(new VBox(5, listView, followOutputCheckBox));
+
+        logLines.getTailIndexed().thenRun(() -> {
+            listView.setPlaceholder(new Label("No output yet"));
+            if (followOutputCheckBox.isSelected()) {
+                listView.scrollTo(logLines.size() - 1);
+            }
+        });
+
+        // Otherwise the view would keep its relative position and jump into the older lines
+        logLines.getOlderContentIndexed().thenAccept(insertedLines -> {
+            if (followOutputCheckBox.isSelected()) {
+                listView.scrollTo(logLines.size() - 1);
+            } else {
+                listView.scrollTo(insertedLines.intValue());
+            }
+        });
+
+        // Lines arriving between two frames are added in one change
+        AnimationTimer appendTimer = new AnimationTimer() {
+            @Override
+            public void handle(final long now) {
+                if (pendingLines.isEmpty()) {
+                    return;
+                }
+                List<String> newLines = new ArrayList<>();
+                String line;
+                while ((line = pendingLines.poll()) != null) {
+                    newLines.add(line);
+                }
+                logLines.addLiveLines(newLines);
+
+                if (followOutputCheckBox.isSelected()) {
+                    listView.scrollTo(logLines.size() - 1);
+                }
+            }
+        };
+
+        Timeline indexTimeline = new Timeline(new KeyFrame(Duration.seconds(1), e ->
+                logLines.updateIndex().thenAccept(linesResolved -> {
+                    if (linesResolved) {
+                        listView.refresh();
+                    }
+                })
+        ));
+        indexTimeline.setCycleCount(Animation.INDEFINITE);
+
+        setOnShown(e -> {
+            appendTimer.start();
+            indexTimeline.play();
+        });
+
+        setOnHidden(e -> {
+            appendTimer.stop();
+            indexTimeline.stop();
+            configuration.unsubscribeFromOutput(outputListener);
+            logLines.close();
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package gui.dialogues.log_dialog;
+
+import bot_logs.LogLineIndex;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// The lines of a bot log as a list for a virtualized ListView.
+// Lines that were in the log file when the viewer was opened are read on demand through the line index,
+// lines output since then are kept in a fixed size ring until the index has caught up with them.
+// The tail of the file is shown first, the older lines are inserted in front once the rest of the file has been read.
+final class LogLineList extends ObservableListBase<String> {
+
+    private static final int LIVE_LINES = 5_000;
+
+    // One thread for all viewers, so indexing and closing an index never overlap
+    private static final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "log-indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Reading all of a large file takes seconds, the live lines of other viewers are not held up meanwhile
+    private static final ExecutorService olderContentIndexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "log-history-indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final LogLineIndex index;
+    private final String[] liveLines = new String[LIVE_LINES];
+    private final CompletableFuture<Void> tailIndexed = new CompletableFuture<>();
+    private final CompletableFuture<Long> olderContentIndexed = new CompletableFuture<>();
+
+    // Lines are numbered as in the index, from the first line of the tail, older lines are in front of those
+    private long olderLines;
+    private long initialLines = -1;
+    private long liveLineCount;
+    private long indexedLines;
+    private boolean updating;
+    private volatile boolean closed;
+
+    LogLineList(final LogLineIndex index) {
+        this.index = index;
+
+        indexer.execute(() -> {
+            try {
+                long lineCount = index.indexTail();
+                Platform.runLater(() -> onTailIndexed(lineCount));
+                olderContentIndexer.execute(this::indexOlderContent);
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> onTailIndexed(0));
+            }
+        });
+    }
+
+    // Completes on the JavaFX thread once the last lines of the file can be shown
+    CompletableFuture<Void> getTailIndexed() {
+        return tailIndexed;
+    }
+
+    // Completes on the JavaFX thread with the number of lines inserted in front of the tail
+    CompletableFuture<Long> getOlderContentIndexed() {
+        return olderContentIndexed;
+    }
+
+    void addLiveLines(final List<String> lines) {
+        if (closed || lines.isEmpty()) {
+            return;
+        }
+
+        int from = size();
+        for (final String line : lines) {
+            liveLines[(int) (liveLineCount++ % LIVE_LINES)] = line;
+        }
+
+        if (initialLines >= 0) {
+            beginChange();
+            nextAdd(from, size());
+            endChange();
+        }
+    }
+
+    // Completes with true when lines that had already left the ring became readable from the log file
+    CompletableFuture<Boolean> updateIndex() {
+        CompletableFuture<Boolean> linesResolved = new CompletableFuture<>();
+        if (closed || updating || initialLines < 0) {
+            linesResolved.complete(false);
+            return linesResolved;
+        }
+
+        updating = true;
+        indexer.execute(() -> {
+            long lineCount;
+            try {
+                lineCount = index.update();
+            } catch (IOException e) {
+                e.printStackTrace();
+                lineCount = index.getLineCount();
+            }
+            final long indexedLineCount = lineCount;
+            Platform.runLater(() -> {
+                updating = false;
+                long oldestLiveLine = initialLines + Math.max(0, liveLineCount - LIVE_LINES);
+                boolean resolved = indexedLines < oldestLiveLine && indexedLineCount > indexedLines;
+                indexedLines = Math.max(indexedLines, Math.min(indexedLineCount, initialLines + liveLineCount));
+                linesResolved.complete(resolved);
+            });
+        });
+        return linesResolved;
+    }
+
+    void close() {
+        closed = true;
+        indexer.execute(() -> {
+            try {
+                index.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public String get(final int lineNumber) {
+        if (lineNumber < 0 || lineNumber >= size()) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " of " + size());
+        }
+
+        long line = lineNumber - olderLines;
+        if (line < indexedLines) {
+            try {
+                return index.getLine(line);
+            } catch (IOException e) {
+                return "Failed to read line: " + e.getMessage();
+            }
+        }
+
+        long liveLine = line - initialLines;
+        if (liveLine >= liveLineCount - LIVE_LINES) {
+            return liveLines[(int) (liveLine % LIVE_LINES)];
+        }
+
+        // Pushed out of the ring by a burst of output, shown once it has been flushed and indexed
+        return "";
+    }
+
+    @Override
+    public int size() {
+        if (initialLines < 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, olderLines + initialLines + liveLineCount);
+    }
+
+    private void indexOlderContent() {
+        long lineCount;
+        try {
+            lineCount = index.indexOlderContent();
+        } catch (IOException e) {
+            // Closing the viewer closes the file under the scan
+            if (!closed) {
+                e.printStackTrace();
+            }
+            lineCount = 0;
+        }
+        final long olderLineCount = lineCount;
+        Platform.runLater(() -> onOlderContentIndexed(olderLineCount));
+    }
+
+    private void onTailIndexed(final long lineCount) {
+        initialLines = lineCount;
+        indexedLines = lineCount;
+
+        if (size() > 0) {
+            beginChange();
+            nextAdd(0, size());
+            endChange();
+        }
+        tailIndexed.complete(null);
+    }
+
+    private void onOlderContentIndexed(final long lineCount) {
+        if (closed) {
+            return;
+        }
+        int inserted = (int) Math.min(lineCount, Integer.MAX_VALUE - size());
+        olderLines = inserted;
+
+        if (inserted > 0) {
+            beginChange();
+            nextAdd(0, inserted);
+            endChange();
+        }
+        olderContentIndexed.complete((long) inserted);
+    }
+}
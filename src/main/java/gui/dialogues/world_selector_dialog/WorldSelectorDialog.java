@@ -1,28 +1,46 @@
 package gui.dialogues.world_selector_dialog;
 
 import bot_parameters.configuration.World;
+import bot_parameters.configuration.WorldAttribute;
+import bot_parameters.configuration.WorldListCache;
+import bot_parameters.configuration.WorldRule;
+import bot_parameters.configuration.WorldSelection;
 import bot_parameters.configuration.WorldType;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.SortedList;
 import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class WorldSelectorDialog extends Dialog {
 
-    private final List<World> allWorlds = World.getWorlds();
+    private static final String ANY_MEMBERSHIP = "Any";
+
+    private List<World> allWorlds = World.getWorlds();
     private final ObservableList<World> availableWorlds = FXCollections.observableArrayList(allWorlds);
     private final ObservableList<World> selectedWorlds = FXCollections.observableArrayList();
 
+    private final CheckBox useRule = new CheckBox("Select worlds by rule");
+    private final ChoiceBox<String> membershipSelector = new ChoiceBox<>(FXCollections.observableArrayList(
+            ANY_MEMBERSHIP, WorldType.F2P.toString(), WorldType.MEMBERS.toString()));
+    private final Map<WorldAttribute, CheckBox> activityCheckBoxes = new EnumMap<>(WorldAttribute.class);
+    private final Map<WorldAttribute, CheckBox> regionCheckBoxes = new EnumMap<>(WorldAttribute.class);
+    // The hand picked worlds, kept while a rule is used in case the rule is switched off again
+    private WorldSelection manualSelection = WorldSelection.empty();
+
     public WorldSelectorDialog() {
         setTitle("Explv's OSBot Manager");
 
+        WorldListCache.addListener(worlds -> Platform.runLater(() -> updateWorlds(worlds)));
+
         VBox content = new VBox(5);
         getDialogPane().setContent(content);
 
@@ -56,29 +74,24 @@ public class WorldSelectorDialog extends Dialog {
 
         Button toggleButton = new Button("Toggle");
         toggleButton.setOnAction(event -> {
-            List<World> worldSelectorSelection = worldListView.getSelectionModel().getSelectedItems();
-            selectedWorlds.addAll(worldSelectorSelection);
-            availableWorlds.removeAll(worldSelectorSelection);
-
-            List<World> selectedWorldsSelection = selectedWorldsListView.getSelectionModel().getSelectedItems();
-            availableWorlds.addAll(selectedWorldsSelection);
-            selectedWorlds.removeAll(selectedWorldsSelection);
+            List<World> worldSelectorSelection = new ArrayList<>(worldListView.getSelectionModel().getSelectedItems());
+            List<World> selectedWorldsSelection = new ArrayList<>(selectedWorldsListView.getSelectionModel().getSelectedItems());
+            moveWorlds(worldSelectorSelection, availableWorlds, selectedWorlds);
+            moveWorlds(selectedWorldsSelection, selectedWorlds, availableWorlds);
         });
         buttonsBox.getChildren().add(toggleButton);
 
         Button addAllF2PButton = new Button("Add all F2P");
         addAllF2PButton.setOnAction(event -> {
             List<World> f2pWorlds = availableWorlds.stream().filter(w -> w.getType() == WorldType.F2P).collect(Collectors.toList());
-            availableWorlds.removeAll(f2pWorlds);
-            selectedWorlds.addAll(f2pWorlds);
+            moveWorlds(f2pWorlds, availableWorlds, selectedWorlds);
         });
         buttonsBox.getChildren().add(addAllF2PButton);
 
         Button addAllMemButton = new Button("Add all Members");
         addAllMemButton.setOnAction(event -> {
             List<World> membersWorlds = availableWorlds.stream().filter(w -> w.getType() == WorldType.MEMBERS).collect(Collectors.toList());
-            availableWorlds.removeAll(membersWorlds);
-            selectedWorlds.addAll(membersWorlds);
+            moveWorlds(membersWorlds, availableWorlds, selectedWorlds);
         });
         buttonsBox.getChildren().add(addAllMemButton);
 
@@ -96,6 +109,49 @@ public class WorldSelectorDialog extends Dialog {
         });
         buttonsBox.getChildren().add(removeAllButton);
 
+        // A rule is matched against every new world list, so the configuration picks up new worlds by itself.
+        // While it is used, the selected list shows the worlds it currently matches.
+        VBox ruleBox = new VBox(5);
+        content.getChildren().addAll(useRule, ruleBox);
+
+        membershipSelector.setValue(ANY_MEMBERSHIP);
+        membershipSelector.valueProperty().addListener(observable -> updateRulePreview());
+        ruleBox.getChildren().add(new FlowPane(10, 10, new Label("Membership:"), membershipSelector));
+
+        FlowPane activitiesPane = new FlowPane(10, 10);
+        for (final WorldAttribute activity : WorldAttribute.ACTIVITIES) {
+            CheckBox activityCheckBox = new CheckBox(activity.toString());
+            activityCheckBox.setAllowIndeterminate(true);
+            activityCheckBox.setIndeterminate(true);
+            activityCheckBox.selectedProperty().addListener(observable -> updateRulePreview());
+            activityCheckBox.indeterminateProperty().addListener(observable -> updateRulePreview());
+            activityCheckBoxes.put(activity, activityCheckBox);
+            activitiesPane.getChildren().add(activityCheckBox);
+        }
+        ruleBox.getChildren().addAll(new Label("Activities (ticked: required, unticked: excluded, dash: either):"), activitiesPane);
+
+        FlowPane regionsPane = new FlowPane(10, 10, new Label("Regions (none ticked: any):"));
+        for (final WorldAttribute region : WorldAttribute.REGIONS) {
+            CheckBox regionCheckBox = new CheckBox(region.toString());
+            regionCheckBox.selectedProperty().addListener(observable -> updateRulePreview());
+            regionCheckBoxes.put(region, regionCheckBox);
+            regionsPane.getChildren().add(regionCheckBox);
+        }
+        ruleBox.getChildren().add(regionsPane);
+
+        ruleBox.disableProperty().bind(useRule.selectedProperty().not());
+        worldListsBox.disableProperty().bind(useRule.selectedProperty());
+        buttonsBox.disableProperty().bind(useRule.selectedProperty());
+
+        useRule.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue) {
+                manualSelection = WorldSelection.of(selectedWorlds);
+                updateRulePreview();
+            } else {
+                showSelection(manualSelection);
+            }
+        });
+
         getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
 
         Node okButton = getDialogPane().lookupButton(ButtonType.OK);
@@ -109,7 +165,47 @@ public class WorldSelectorDialog extends Dialog {
         getDialogPane().getStyleClass().add("custom-dialog");
     }
 
+    // Replaces the worlds with a refreshed list, keeping the selection and the world details up to date
+    private void updateWorlds(final List<World> worlds) {
+        WorldSelection previousSelection = getSelection();
+        allWorlds = worlds;
+        if (useRule.isSelected()) {
+            updateRulePreview();
+        } else {
+            showSelection(previousSelection);
+        }
+    }
+
+    private void updateRulePreview() {
+        if (!useRule.isSelected()) {
+            return;
+        }
+        WorldRule rule = getWorldRule();
+        List<World> matchingWorlds = new ArrayList<>();
+        List<World> otherWorlds = new ArrayList<>();
+        for (final World world : allWorlds) {
+            if (rule.matches(world)) {
+                matchingWorlds.add(world);
+            } else {
+                otherWorlds.add(world);
+            }
+        }
+        selectedWorlds.setAll(matchingWorlds);
+        availableWorlds.setAll(otherWorlds);
+    }
+
+    // ObservableList.removeAll checks every element against the whole collection, a set lookup keeps this linear
+    private static void moveWorlds(final List<World> worlds, final ObservableList<World> from, final ObservableList<World> to) {
+        if (worlds.isEmpty()) {
+            return;
+        }
+        Set<World> movedWorlds = new HashSet<>(worlds);
+        from.setAll(from.stream().filter(world -> !movedWorlds.contains(world)).collect(Collectors.toList()));
+        to.addAll(worlds);
+    }
+
     public void clearSelectedWorlds() {
+        setWorldRule(null);
         this.selectedWorlds.clear();
         this.availableWorlds.setAll(allWorlds);
     }
@@ -118,20 +214,95 @@ public class WorldSelectorDialog extends Dialog {
         return selectedWorlds;
     }
 
-    public void setSelectedWorlds(final ObservableList<World> selectedWorlds) {
-        this.selectedWorlds.clear();
+    public WorldSelection getSelection() {
+        return useRule.isSelected() ? manualSelection : WorldSelection.of(selectedWorlds);
+    }
+
+    public void setSelectedWorlds(final WorldSelection selection) {
+        if (useRule.isSelected()) {
+            manualSelection = selection;
+        } else {
+            showSelection(selection);
+        }
+    }
+
+    // Null when the worlds are picked by hand
+    public WorldRule getWorldRule() {
+        if (!useRule.isSelected()) {
+            return null;
+        }
 
-        for (final World world : selectedWorlds) {
-            // We get the world from the list of latest worlds, in case the world detail has changed
-            int latestWorldIndex = allWorlds.indexOf(world);
-            if (latestWorldIndex == -1) {
+        int required = 0;
+        int excluded = 0;
+        int regions = 0;
+
+        if (WorldType.MEMBERS.toString().equals(membershipSelector.getValue())) {
+            required |= WorldAttribute.MEMBERS.getMask();
+        } else if (WorldType.F2P.toString().equals(membershipSelector.getValue())) {
+            excluded |= WorldAttribute.MEMBERS.getMask();
+        }
+        for (final Map.Entry<WorldAttribute, CheckBox> activity : activityCheckBoxes.entrySet()) {
+            if (activity.getValue().isIndeterminate()) {
                 continue;
+            }
+            if (activity.getValue().isSelected()) {
+                required |= activity.getKey().getMask();
+            } else {
+                excluded |= activity.getKey().getMask();
+            }
+        }
+        for (final Map.Entry<WorldAttribute, CheckBox> region : regionCheckBoxes.entrySet()) {
+            if (region.getValue().isSelected()) {
+                regions |= region.getKey().getMask();
+            }
+        }
+        return new WorldRule(required, excluded, regions);
+    }
+
+    public void setWorldRule(final WorldRule rule) {
+        if (rule == null) {
+            membershipSelector.setValue(ANY_MEMBERSHIP);
+            activityCheckBoxes.values().forEach(activityCheckBox -> activityCheckBox.setIndeterminate(true));
+            regionCheckBoxes.values().forEach(regionCheckBox -> regionCheckBox.setSelected(false));
+            useRule.setSelected(false);
+            return;
+        }
+
+        int membersMask = WorldAttribute.MEMBERS.getMask();
+        membershipSelector.setValue((rule.getRequired() & membersMask) != 0 ? WorldType.MEMBERS.toString()
+                : (rule.getExcluded() & membersMask) != 0 ? WorldType.F2P.toString() : ANY_MEMBERSHIP);
+        for (final Map.Entry<WorldAttribute, CheckBox> activity : activityCheckBoxes.entrySet()) {
+            int mask = activity.getKey().getMask();
+            activity.getValue().setIndeterminate((rule.getRequired() & mask) == 0 && (rule.getExcluded() & mask) == 0);
+            activity.getValue().setSelected((rule.getRequired() & mask) != 0);
+        }
+        for (final Map.Entry<WorldAttribute, CheckBox> region : regionCheckBoxes.entrySet()) {
+            region.getValue().setSelected((rule.getRegions() & region.getKey().getMask()) != 0);
+        }
+        useRule.setSelected(true);
+        updateRulePreview();
+    }
+
+    private void showSelection(final WorldSelection selection) {
+        // Until the first world list has been fetched, the configuration's own worlds are all there is
+        if (allWorlds.isEmpty()) {
+            this.selectedWorlds.setAll(selection.getWorlds());
+            this.availableWorlds.clear();
+            return;
+        }
+
+        // The worlds come from the list of latest worlds, in case the world detail has changed
+        List<World> latestSelectedWorlds = new ArrayList<>(selection.size());
+        List<World> latestAvailableWorlds = new ArrayList<>(allWorlds.size());
+        for (final World world : allWorlds) {
+            if (selection.contains(world)) {
+                latestSelectedWorlds.add(world);
             } else {
-                this.selectedWorlds.add(allWorlds.get(latestWorldIndex));
+                latestAvailableWorlds.add(world);
             }
         }
 
-        this.availableWorlds.setAll(allWorlds);
-        this.availableWorlds.removeAll(selectedWorlds);
+        this.selectedWorlds.setAll(latestSelectedWorlds);
+        this.availableWorlds.setAll(latestAvailableWorlds);
     }
 }
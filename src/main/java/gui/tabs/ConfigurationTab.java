@@ -2,34 +2,91 @@ package gui.tabs;
 
 import bot_parameters.account.RunescapeAccount;
 import bot_parameters.configuration.Configuration;
+import bot_parameters.configuration.RunOutcome;
 import bot_parameters.proxy.Proxy;
 import bot_parameters.script.Script;
+import bot_process.ProcessSampler;
+import bot_process.ProcessTree;
 import gui.ToolbarButton;
 import gui.dialogues.error_dialog.ExceptionDialog;
 import gui.dialogues.input_dialog.ConfigurationDialog;
+import gui.dialogues.log_dialog.LogDialog;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Orientation;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Modality;
+import javafx.util.Duration;
+import launcher.LaunchScheduler;
+import launcher.MemoryAdmissionController;
+import metrics.FleetMetrics;
 import osbot_client.OSBotClient;
+import settings.Settings;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ConfigurationTab extends TableTab<Configuration> {
 
-    private final Button startButton, stopButton;
+    private static final int PROCESS_SAMPLE_INTERVAL_SECONDS = 2;
+
+    private static final ProcessSampler processSampler = new ProcessSampler();
+    private static final ExecutorService processSampleExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "process-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Button startButton, stopButton, stopAllButton;
+    private final Label launchStatusLabel;
+    private final LaunchScheduler launchScheduler;
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    private volatile List<Configuration> fleet = Collections.emptyList();
 
     public ConfigurationTab(final ObservableList<RunescapeAccount> runescapeAccounts, final ObservableList<Script> scripts, final ObservableList<Proxy> proxies) {
         super("Configurations", "No configurations found.", new ConfigurationDialog(runescapeAccounts, scripts, proxies));
 
+        launchScheduler = new LaunchScheduler(
+                Settings.getIntPreference(LaunchScheduler.MAX_CONCURRENT_STARTS_PREFERENCE, LaunchScheduler.DEFAULT_MAX_CONCURRENT_STARTS),
+                e -> Platform.runLater(() -> new ExceptionDialog(e).show())
+        );
+
+        // The metrics renderer reads a copy, the table's own list may only be touched on the FX thread
+        getTableView().getItems().addListener((ListChangeListener<Configuration>) change ->
+                fleet = new ArrayList<>(getTableView().getItems()));
+        FleetMetrics.setFleet(() -> fleet);
+
+        launchStatusLabel = new Label();
+        toolBar.getChildren().add(0, launchStatusLabel);
+
+        Timeline launchStatusTimeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateLaunchStatus()));
+        launchStatusTimeline.setCycleCount(Animation.INDEFINITE);
+        launchStatusTimeline.play();
+        updateLaunchStatus();
+
+        if (ProcessSampler.isSupported()) {
+            Timeline processSampleTimeline = new Timeline(new KeyFrame(Duration.seconds(PROCESS_SAMPLE_INTERVAL_SECONDS), e -> sampleProcesses()));
+            processSampleTimeline.setCycleCount(Animation.INDEFINITE);
+            processSampleTimeline.play();
+        }
 
         toolBar.getChildren().add(new Separator(Orientation.VERTICAL));
 
@@ -39,6 +96,9 @@ public class ConfigurationTab extends TableTab<Configuration> {
         stopButton = new ToolbarButton("Stop", "stop_icon.png", "stop_icon_blue.png");
         toolBar.getChildren().add(stopButton);
 
+        stopAllButton = new ToolbarButton("Stop all", "stop_icon.png", "stop_icon_blue.png");
+        toolBar.getChildren().add(stopAllButton);
+
         startButton.setOnAction(e -> {
             startButton.setDisable(true);
             start();
@@ -46,14 +106,28 @@ public class ConfigurationTab extends TableTab<Configuration> {
 
         stopButton.setOnAction(e -> stop());
 
+        stopAllButton.setOnAction(e -> stopAll());
+
         TableColumn<Configuration, ObservableList<Script>> scriptCol = new TableColumn<>("Scripts");
         scriptCol.setCellValueFactory(new PropertyValueFactory<>("scripts"));
 
         TableColumn<Configuration, RunescapeAccount> accountCol = new TableColumn<>("Account");
         accountCol.setCellValueFactory(new PropertyValueFactory<>("runescapeAccount"));
 
-        TableColumn<Configuration, Integer> worldCol = new TableColumn<>("Worlds");
-        worldCol.setCellValueFactory(new PropertyValueFactory<>("worlds"));
+        TableColumn<Configuration, Number> cpuCol = new TableColumn<>("CPU");
+        cpuCol.setCellValueFactory(new PropertyValueFactory<>("cpuUsage"));
+        cpuCol.setCellFactory(param -> new UsageTableCell(cpuUsage -> String.format("%.1f%%", cpuUsage.doubleValue())));
+
+        TableColumn<Configuration, Number> residentMemoryCol = new TableColumn<>("RSS");
+        residentMemoryCol.setCellValueFactory(new PropertyValueFactory<>("residentMemory"));
+        residentMemoryCol.setCellFactory(param -> new UsageTableCell(residentMemory -> String.format("%d MB", residentMemory.longValue() / (1024 * 1024))));
+
+        TableColumn<Configuration, String> worldCol = new TableColumn<>("Worlds");
+        worldCol.setCellValueFactory(param -> {
+            Configuration configuration = param.getValue();
+            return Bindings.createStringBinding(() -> configuration.getWorldRule() != null ? configuration.getWorldRule().toString() : configuration.getWorlds().toString(),
+                    configuration.worldsProperty(), configuration.worldRuleProperty());
+        });
 
         TableColumn<Configuration, Proxy> proxyCol = new TableColumn<>("Proxy");
         proxyCol.setCellValueFactory(new PropertyValueFactory<>("proxy"));
@@ -109,9 +183,12 @@ public class ConfigurationTab extends TableTab<Configuration> {
         TableColumn<Configuration, Boolean> closeClientCol = new TableColumn<>("Close Client");
         closeClientCol.setCellValueFactory(new PropertyValueFactory<>("closeClient"));
 
-        getTableView().getColumns().addAll(scriptCol, accountCol, worldCol, proxyCol, mirrorCol, launchGameCol, breakCol,
+        TableColumn<Configuration, Boolean> restartOnCrashCol = new TableColumn<>("Restart On Crash");
+        restartOnCrashCol.setCellValueFactory(new PropertyValueFactory<>("restartOnCrash"));
+
+        getTableView().getColumns().addAll(scriptCol, accountCol, cpuCol, residentMemoryCol, worldCol, proxyCol, mirrorCol, launchGameCol, breakCol,
                 stopBreakCol, memoryCol, collectDataCol, debugModeCol, debugPortCol, lowCpuCol, lowResCol, reflectionCol,
-                noRandomsCol, noInterfaceCol, noRenderCol, dismissRandomsCol, newMouseCol, closeClientCol);
+                noRandomsCol, noInterfaceCol, noRenderCol, dismissRandomsCol, newMouseCol, closeClientCol, restartOnCrashCol);
 
         getTableView().setRowFactory(param -> {
 
@@ -154,46 +231,122 @@ public class ConfigurationTab extends TableTab<Configuration> {
     }
 
     private void stop() {
-        getTableView().getSelectionModel().getSelectedItems().forEach(Configuration::stop);
+        getTableView().getSelectionModel().getSelectedItems().forEach(configuration -> {
+            if (!launchScheduler.cancel(configuration)) {
+                configuration.stop();
+            }
+        });
     }
 
-    private void showLog() {
-        Configuration configuration = getTableView().getSelectionModel().getSelectedItem();
-        Dialog dialog = new Dialog();
-        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
-        dialog.setResizable(true);
-        dialog.initModality(Modality.NONE);
+    private void stopAll() {
+        launchScheduler.cancelAll();
 
-        TextArea textArea = new TextArea();
-        ScrollPane scrollPane = new ScrollPane(textArea);
-        scrollPane.setFitToHeight(true);
-        scrollPane.setFitToWidth(true);
-        AnchorPane.setBottomAnchor(scrollPane, 0.0);
-        AnchorPane.setRightAnchor(scrollPane, 0.0);
-        AnchorPane.setLeftAnchor(scrollPane, 0.0);
-        AnchorPane.setTopAnchor(scrollPane, 0.0);
-        AnchorPane anchorPane = new AnchorPane(scrollPane);
+        // Launched covers a configuration that is starting or between two scripts of its chain
+        List<Configuration> activeConfigurations = getTableView().getItems().stream()
+                .filter(configuration -> configuration.isRunning() || launchScheduler.isActive(configuration))
+                .collect(Collectors.toList());
+        if (activeConfigurations.isEmpty()) {
+            return;
+        }
 
-        dialog.getDialogPane().setContent(anchorPane);
+        stopAllButton.setDisable(true);
 
-        dialog.show();
+        final int stopCount = activeConfigurations.size();
+        final List<Integer> survivingPIDs = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] stops = activeConfigurations.stream()
+                .map(configuration -> {
+                    CompletableFuture<Void> stopped = configuration.stop().exceptionally(throwable -> {
+                        survivingPIDs.addAll(ProcessTree.getSurvivingPIDs(throwable));
+                        return null;
+                    });
+                    // Only done once the run has finished, so no further script of its chain can start
+                    CompletableFuture<RunOutcome> runFinished = configuration.getRunFinished();
+                    return runFinished == null ? stopped : CompletableFuture.allOf(stopped, runFinished);
+                })
+                .toArray(CompletableFuture<?>[]::new);
+
+        CompletableFuture.allOf(stops).whenComplete((result, throwable) -> Platform.runLater(() -> {
+            stopAllButton.setDisable(false);
+
+            Alert stoppedAlert = new Alert(survivingPIDs.isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+            stoppedAlert.setTitle("Explv's OSBot Manager");
+            stoppedAlert.setHeaderText("Stop all");
+            if (survivingPIDs.isEmpty()) {
+                stoppedAlert.setContentText(String.format("All %d configurations have stopped.", stopCount));
+            } else {
+                stoppedAlert.setContentText(String.format("Some processes are still running after being killed, PIDs: %s", survivingPIDs));
+            }
+            stoppedAlert.show();
+        }));
+    }
+
+    private void updateLaunchStatus() {
+        String launchStatus = String.format("Queued: %d%s | Starting: %d/%d | %d starts/min",
+                launchScheduler.getQueueDepth(),
+                launchScheduler.isWaitingForMemory() ? " (waiting for memory)" : "",
+                launchScheduler.getStartsInProgress(),
+                launchScheduler.getMaxConcurrentStarts(),
+                launchScheduler.getAdmitsLastMinute());
+
+        int pendingRestarts = launchScheduler.getCrashSupervisor().getPendingRestarts();
+        if (pendingRestarts > 0) {
+            launchStatus += String.format(" | Restarting: %d", pendingRestarts);
+        }
 
-        Thread readFileThread = new Thread(() -> {
-            try (BufferedReader br = new BufferedReader(new FileReader(new File(configuration.getLogFileName()).toString()))) {
-                String line = null;
-                while (dialog.isShowing() && (((line = br.readLine()) != null) || configuration.isRunning())) {
-                    if (line != null) {
-                        final String updateLine = line;
-                        Platform.runLater(() -> textArea.appendText(updateLine + System.lineSeparator()));
+        MemoryAdmissionController memoryAdmissionController = launchScheduler.getMemoryAdmissionController();
+        if (memoryAdmissionController.hasBudget()) {
+            launchStatus += String.format(" | Memory: %d/%d MB committed",
+                    memoryAdmissionController.getCommittedMB(),
+                    memoryAdmissionController.getBudgetMB());
+
+            long availableMB = MemoryAdmissionController.getAvailableMB();
+            if (availableMB >= 0) {
+                launchStatus += String.format(", %d MB free", availableMB);
+            }
+        }
+        launchStatusLabel.setText(launchStatus);
+    }
+
+    // The /proc reads happen off the FX thread, a sample is skipped if the previous one is still running
+    private void sampleProcesses() {
+        if (!sampling.compareAndSet(false, true)) {
+            return;
+        }
+
+        Map<Configuration, List<Integer>> processGroups = new HashMap<>();
+        List<Configuration> configurations = new ArrayList<>(getTableView().getItems());
+        for (final Configuration configuration : configurations) {
+            List<Integer> processIDs = configuration.getProcessIDs();
+            if (!processIDs.isEmpty()) {
+                processGroups.put(configuration, processIDs);
+            }
+        }
+
+        processSampleExecutor.execute(() -> {
+            try {
+                Map<Configuration, ProcessSampler.Usage> usages = processSampler.sample(processGroups);
+                Platform.runLater(() -> configurations.forEach(configuration -> {
+                    ProcessSampler.Usage usage = usages.get(configuration);
+                    if (usage != null) {
+                        configuration.setResourceUsage(usage.getCpuPercent(), usage.getResidentBytes());
                     } else {
-                        Thread.sleep(500);
+                        configuration.setResourceUsage(-1, -1);
                     }
-                }
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
+                }));
+            } finally {
+                sampling.set(false);
             }
         });
-        readFileThread.start();
+    }
+
+    private void showLog() {
+        Configuration configuration = getTableView().getSelectionModel().getSelectedItem();
+        try {
+            new LogDialog(configuration).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            new ExceptionDialog(e).show();
+        }
     }
 
     private void showCommand() {
@@ -223,40 +376,50 @@ public class ConfigurationTab extends TableTab<Configuration> {
     }
 
     private void runConfigurations(final List<Configuration> configurations) {
-        final int delay = configurations.size() > 1 ? getDelayFromUser() : 0;
+        if (configurations.size() > 1) {
+            getMaxConcurrentStartsFromUser().ifPresent(maxConcurrentStarts -> {
+                launchScheduler.setMaxConcurrentStarts(maxConcurrentStarts);
+                Settings.setPreference(LaunchScheduler.MAX_CONCURRENT_STARTS_PREFERENCE, String.valueOf(maxConcurrentStarts));
+            });
+        }
 
         if (OSBotClient.isUpdateRequired()) {
             if (!OSBotClient.download()) {
                 System.out.print("Oops");
+                startButton.setDisable(false);
                 return;
             }
         }
 
-        new Thread(() -> {
-            for (final Configuration configuration : configurations) {
-                try {
-                    configuration.run();
-                    Thread.sleep(delay * 1_000L);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    Platform.runLater(() -> new ExceptionDialog(e).show());
-                }
-            }
-            Platform.runLater(() -> {
-                startButton.setDisable(false);
-            });
-        }).start();
+        launchScheduler.submitAll(new ArrayList<>(configurations));
+        updateLaunchStatus();
+        startButton.setDisable(false);
     }
 
-    private Integer getDelayFromUser() {
-        TextInputDialog delayDialog = new TextInputDialog("5");
-        delayDialog.setTitle("Explv's OSBot Manager");
-        delayDialog.setHeaderText("Set delay between bot starts");
-        delayDialog.setContentText("Enter delay (s):");
+    private Optional<Integer> getMaxConcurrentStartsFromUser() {
+        TextInputDialog maxStartsDialog = new TextInputDialog(String.valueOf(launchScheduler.getMaxConcurrentStarts()));
+        maxStartsDialog.setTitle("Explv's OSBot Manager");
+        maxStartsDialog.setHeaderText("Set the maximum number of bots starting at once");
+        maxStartsDialog.setContentText("Concurrent starts:");
 
-        Optional<String> delayText = delayDialog.showAndWait();
+        Optional<String> maxStartsText = maxStartsDialog.showAndWait();
 
-        return delayText.map(Integer::parseInt).orElse(0);
+        return maxStartsText.map(String::trim).filter(text -> text.matches("\\d+")).map(Integer::parseInt).filter(max -> max > 0);
+    }
+
+    // Blank for bots that are not running, a negative value means no sample
+    private static final class UsageTableCell extends TableCell<Configuration, Number> {
+
+        private final Function<Number, String> formatter;
+
+        UsageTableCell(final Function<Number, String> formatter) {
+            this.formatter = formatter;
+        }
+
+        @Override
+        protected void updateItem(final Number item, final boolean empty) {
+            super.updateItem(item, empty);
+            setText(empty || item == null || item.doubleValue() < 0 ? null : formatter.apply(item));
+        }
     }
 }
@@ -0,0 +1,166 @@
+package launcher;
+
+import bot_parameters.configuration.Configuration;
+import bot_parameters.configuration.RunOutcome;
+import exceptions.CrashLoopException;
+import settings.Settings;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Restarts configurations with restart on crash enabled when their bot exits without being stopped.
+// Consecutive crashes back off exponentially with jitter, restarts across the fleet are rate limited so a mass crash
+// does not turn into a burst of logins, and a configuration that keeps crashing is given up on.
+// Runs that ended because of a login, client version or web walking problem are never restarted, they would fail again.
+public final class CrashSupervisor {
+
+    public static final String INITIAL_DELAY_SECONDS_PREFERENCE = "restart.initial_delay_seconds";
+    public static final String MAX_DELAY_SECONDS_PREFERENCE = "restart.max_delay_seconds";
+    public static final String MAX_ATTEMPTS_PREFERENCE = "restart.max_attempts";
+    public static final String STABLE_RUN_SECONDS_PREFERENCE = "restart.stable_run_seconds";
+    public static final String MAX_PER_MINUTE_PREFERENCE = "restart.max_per_minute";
+
+    private static final long RATE_WINDOW_MS = 60_000;
+
+    private final Map<Configuration, RestartState> restartStates = new HashMap<>();
+    private final Deque<Long> restartTimes = new ArrayDeque<>();
+    private final ScheduledExecutorService executor;
+    private final Consumer<Configuration> restarter;
+    private final Consumer<Exception> giveUpHandler;
+
+    CrashSupervisor(final ScheduledExecutorService executor, final Consumer<Configuration> restarter, final Consumer<Exception> giveUpHandler) {
+        this.executor = executor;
+        this.restarter = restarter;
+        this.giveUpHandler = giveUpHandler;
+    }
+
+    // A pending restart is superseded by any other start of the configuration
+    synchronized void onRunStarted(final Configuration configuration) {
+        RestartState restartState = restartStates.computeIfAbsent(configuration, c -> new RestartState());
+        cancelPendingRestart(restartState);
+        restartState.runStartTime = System.currentTimeMillis();
+    }
+
+    void onRunFinished(final Configuration configuration, final RunOutcome outcome) {
+        Exception giveUpException = null;
+
+        synchronized (this) {
+            RestartState restartState = restartStates.get(configuration);
+            if (restartState == null) {
+                return;
+            }
+
+            if (!configuration.isRestartOnCrash() || (outcome != RunOutcome.CRASHED && outcome != RunOutcome.FAILED_TO_START)) {
+                if (configuration.isRestartOnCrash() && outcome != RunOutcome.STOPPED && outcome != RunOutcome.COMPLETED) {
+                    System.out.printf("Not restarting %s, the run ended with %s%n", getUsername(configuration), outcome);
+                }
+                restartStates.remove(configuration);
+                return;
+            }
+
+            // A run that stayed up long enough starts the backoff over
+            long runSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - restartState.runStartTime);
+            if (runSeconds >= Settings.getIntPreference(STABLE_RUN_SECONDS_PREFERENCE, 600)) {
+                restartState.consecutiveCrashes = 0;
+            }
+            restartState.consecutiveCrashes++;
+
+            int maxAttempts = Settings.getIntPreference(MAX_ATTEMPTS_PREFERENCE, 5);
+            if (restartState.consecutiveCrashes > maxAttempts) {
+                restartStates.remove(configuration);
+                giveUpException = new CrashLoopException(getUsername(configuration), restartState.consecutiveCrashes);
+            } else {
+                long delayMillis = getBackoffMillis(restartState.consecutiveCrashes);
+                System.out.printf("Restarting %s in %.1f seconds after crash %d of %d%n",
+                        getUsername(configuration), delayMillis / 1000.0, restartState.consecutiveCrashes, maxAttempts);
+                restartState.pendingRestart = executor.schedule(() -> restart(configuration), delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (giveUpException != null) {
+            giveUpHandler.accept(giveUpException);
+        }
+    }
+
+    synchronized boolean cancel(final Configuration configuration) {
+        RestartState restartState = restartStates.remove(configuration);
+        return restartState != null && cancelPendingRestart(restartState);
+    }
+
+    synchronized void cancelAll() {
+        restartStates.values().forEach(this::cancelPendingRestart);
+        restartStates.clear();
+    }
+
+    public synchronized boolean isRestartPending(final Configuration configuration) {
+        RestartState restartState = restartStates.get(configuration);
+        return restartState != null && restartState.pendingRestart != null;
+    }
+
+    public synchronized int getPendingRestarts() {
+        return (int) restartStates.values().stream().filter(restartState -> restartState.pendingRestart != null).count();
+    }
+
+    // Equal jitter: at least half of the exponential delay, so restarts after a mass crash spread out but never come early
+    private static long getBackoffMillis(final int consecutiveCrashes) {
+        long initialDelayMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Settings.getIntPreference(INITIAL_DELAY_SECONDS_PREFERENCE, 15)));
+        long maxDelayMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Settings.getIntPreference(MAX_DELAY_SECONDS_PREFERENCE, 900)));
+
+        long delayMillis = initialDelayMillis << Math.min(consecutiveCrashes - 1, 20);
+        delayMillis = Math.min(delayMillis, maxDelayMillis);
+        return delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+    }
+
+    private void restart(final Configuration configuration) {
+        synchronized (this) {
+            RestartState restartState = restartStates.get(configuration);
+            if (restartState == null || restartState.pendingRestart == null) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            while (!restartTimes.isEmpty() && now - restartTimes.peekFirst() >= RATE_WINDOW_MS) {
+                restartTimes.pollFirst();
+            }
+
+            // Over the fleet wide rate, wait until the oldest restart leaves the window
+            if (restartTimes.size() >= Math.max(1, Settings.getIntPreference(MAX_PER_MINUTE_PREFERENCE, 6))) {
+                long waitMillis = restartTimes.peekFirst() + RATE_WINDOW_MS - now;
+                restartState.pendingRestart = executor.schedule(() -> restart(configuration), waitMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            restartTimes.add(now);
+            restartState.pendingRestart = null;
+        }
+
+        // Outside the lock, the scheduler calls back into the supervisor while holding its own
+        restarter.accept(configuration);
+    }
+
+    private boolean cancelPendingRestart(final RestartState restartState) {
+        if (restartState.pendingRestart == null) {
+            return false;
+        }
+        restartState.pendingRestart.cancel(false);
+        restartState.pendingRestart = null;
+        return true;
+    }
+
+    private static String getUsername(final Configuration configuration) {
+        return configuration.getRunescapeAccount().getUsername();
+    }
+
+    private static final class RestartState {
+        private int consecutiveCrashes;
+        private long runStartTime;
+        private ScheduledFuture<?> pendingRestart;
+    }
+}
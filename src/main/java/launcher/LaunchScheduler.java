@@ -0,0 +1,203 @@
+package launcher;
+
+import bot_parameters.configuration.Configuration;
+import bot_parameters.configuration.RunOutcome;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public final class LaunchScheduler {
+
+    public static final String MAX_CONCURRENT_STARTS_PREFERENCE = "launch.max_concurrent_starts";
+    public static final int DEFAULT_MAX_CONCURRENT_STARTS = 5;
+
+    private static final long LOAD_TIMEOUT_SECONDS = 180;
+    private static final long ADMIT_RATE_WINDOW_MS = 60_000;
+    private static final long MEMORY_RECHECK_MS = 5_000;
+
+    private final Deque<Configuration> queue = new ArrayDeque<>();
+    private final Deque<Long> admitTimes = new ArrayDeque<>();
+    private final Set<Configuration> launched = new HashSet<>();
+    private final Consumer<Exception> launchFailureHandler;
+    private final MemoryAdmissionController memoryAdmissionController = new MemoryAdmissionController();
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "launch-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CrashSupervisor crashSupervisor;
+
+    private int maxConcurrentStarts;
+    private int startsInProgress;
+    private boolean waitingForMemory;
+
+    public LaunchScheduler(final int maxConcurrentStarts, final Consumer<Exception> launchFailureHandler) {
+        this.maxConcurrentStarts = Math.max(1, maxConcurrentStarts);
+        this.launchFailureHandler = launchFailureHandler;
+        this.crashSupervisor = new CrashSupervisor(timeoutExecutor, this::submit, launchFailureHandler);
+
+        Thread dispatchThread = new Thread(this::dispatch, "launch-scheduler");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    // Ignored while the configuration is active, also between two scripts of its chain
+    public synchronized void submit(final Configuration configuration) {
+        if (isActive(configuration)) {
+            return;
+        }
+        queue.add(configuration);
+        notifyAll();
+    }
+
+    public synchronized void submitAll(final List<Configuration> configurations) {
+        configurations.forEach(this::submit);
+    }
+
+    // Also cancels a pending restart, true if the configuration was waiting for either
+    public synchronized boolean cancel(final Configuration configuration) {
+        boolean restartCancelled = crashSupervisor.cancel(configuration);
+        return queue.remove(configuration) || restartCancelled;
+    }
+
+    public synchronized boolean isQueued(final Configuration configuration) {
+        return queue.contains(configuration);
+    }
+
+    public synchronized void cancelAll() {
+        queue.clear();
+        crashSupervisor.cancelAll();
+    }
+
+    // Queued, running, or waiting to be restarted after a crash
+    public synchronized boolean isActive(final Configuration configuration) {
+        return queue.contains(configuration) || launched.contains(configuration) || crashSupervisor.isRestartPending(configuration);
+    }
+
+    public synchronized void setMaxConcurrentStarts(final int maxConcurrentStarts) {
+        this.maxConcurrentStarts = Math.max(1, maxConcurrentStarts);
+        notifyAll();
+    }
+
+    public synchronized int getMaxConcurrentStarts() {
+        return maxConcurrentStarts;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getStartsInProgress() {
+        return startsInProgress;
+    }
+
+    public CrashSupervisor getCrashSupervisor() {
+        return crashSupervisor;
+    }
+
+    public MemoryAdmissionController getMemoryAdmissionController() {
+        return memoryAdmissionController;
+    }
+
+    public synchronized boolean isWaitingForMemory() {
+        return waitingForMemory;
+    }
+
+    public synchronized int getAdmitsLastMinute() {
+        pruneAdmitTimes(System.currentTimeMillis());
+        return admitTimes.size();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Configuration configuration;
+
+            synchronized (this) {
+                while (true) {
+                    waitingForMemory = false;
+                    if (!queue.isEmpty() && startsInProgress < maxConcurrentStarts) {
+                        // Launches stay in order, a large bot is not overtaken by smaller ones behind it
+                        if (memoryAdmissionController.canAdmit(queue.peek())) {
+                            break;
+                        }
+                        waitingForMemory = true;
+                    }
+                    try {
+                        // Re-checked periodically as well, the budget can be changed in the preferences
+                        wait(waitingForMemory ? MEMORY_RECHECK_MS : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                configuration = queue.poll();
+                configuration.clearStopRequest();
+                startsInProgress++;
+                launched.add(configuration);
+                memoryAdmissionController.admit(configuration);
+
+                long now = System.currentTimeMillis();
+                admitTimes.add(now);
+                pruneAdmitTimes(now);
+            }
+
+            // One configuration that fails unexpectedly must not stop every launch queued behind it
+            try {
+                launch(configuration);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void launch(final Configuration configuration) {
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseSlot = () -> {
+            if (released.compareAndSet(false, true)) {
+                synchronized (this) {
+                    startsInProgress--;
+                    notifyAll();
+                }
+            }
+        };
+
+        // A start slot is held until the client has loaded, so the next launch is admitted by progress rather than a timer
+        try {
+            crashSupervisor.onRunStarted(configuration);
+            CompletableFuture<Void> loaded = configuration.run();
+            loaded.whenComplete((result, throwable) -> releaseSlot.run());
+            timeoutExecutor.schedule(releaseSlot, LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            // Memory stays committed until every script of the run has exited
+            configuration.getRunFinished().whenComplete((outcome, throwable) -> finishLaunch(configuration, outcome));
+        } catch (Exception e) {
+            releaseSlot.run();
+            finishLaunch(configuration, RunOutcome.FAILED_TO_START);
+            launchFailureHandler.accept(e);
+        }
+    }
+
+    // The restart decision is made before the configuration stops counting as launched, so it is never seen as idle in between
+    private void finishLaunch(final Configuration configuration, final RunOutcome outcome) {
+        memoryAdmissionController.release(configuration);
+        crashSupervisor.onRunFinished(configuration, outcome);
+        synchronized (this) {
+            launched.remove(configuration);
+            notifyAll();
+        }
+    }
+
+    private void pruneAdmitTimes(final long now) {
+        while (!admitTimes.isEmpty() && now - admitTimes.peekFirst() > ADMIT_RATE_WINDOW_MS) {
+            admitTimes.pollFirst();
+        }
+    }
+}
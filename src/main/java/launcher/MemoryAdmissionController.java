@@ -0,0 +1,95 @@
+package launcher;
+
+import bot_parameters.configuration.Configuration;
+import settings.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+// Keeps the memory committed to running bots within a budget for the host.
+// A bot commits its memory allocation, or a default when it has none, plus the overhead of the JVM around the heap.
+public final class MemoryAdmissionController {
+
+    public static final String BUDGET_MB_PREFERENCE = "memory.budget_mb";
+    public static final String RESERVED_MB_PREFERENCE = "memory.reserved_mb";
+    public static final String DEFAULT_ALLOCATION_MB_PREFERENCE = "memory.default_allocation_mb";
+    public static final String OVERHEAD_MB_PREFERENCE = "memory.overhead_mb";
+
+    private static final File MEMINFO_FILE = new File("/proc/meminfo");
+
+    private final Map<Configuration, Long> committed = new HashMap<>();
+    private final long hostTotalMB = readMeminfoMB("MemTotal");
+    private long committedMB;
+
+    // Without a configured budget the host's total memory less a reserve for the OS and the manager is used.
+    // On hosts without /proc/meminfo nothing is held back unless a budget is configured.
+    public long getBudgetMB() {
+        int configuredBudget = Settings.getIntPreference(BUDGET_MB_PREFERENCE, 0);
+        if (configuredBudget > 0) {
+            return configuredBudget;
+        }
+        if (hostTotalMB <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, hostTotalMB - Settings.getIntPreference(RESERVED_MB_PREFERENCE, 1024));
+    }
+
+    public boolean hasBudget() {
+        return getBudgetMB() != Long.MAX_VALUE;
+    }
+
+    public synchronized long getCommittedMB() {
+        return committedMB;
+    }
+
+    public static long getAvailableMB() {
+        return readMeminfoMB("MemAvailable");
+    }
+
+    public static long estimateMB(final Configuration configuration) {
+        long allocation = configuration.getMemoryAllocation() > 0
+                ? configuration.getMemoryAllocation()
+                : Settings.getIntPreference(DEFAULT_ALLOCATION_MB_PREFERENCE, 1024);
+        return allocation + Settings.getIntPreference(OVERHEAD_MB_PREFERENCE, 256);
+    }
+
+    // A bot that is larger than the whole budget is still admitted once nothing else is running, rather than never
+    public synchronized boolean canAdmit(final Configuration configuration) {
+        return committedMB == 0 || committedMB + estimateMB(configuration) <= getBudgetMB();
+    }
+
+    public synchronized void admit(final Configuration configuration) {
+        long estimate = estimateMB(configuration);
+        Long previous = committed.put(configuration, estimate);
+        committedMB += estimate - (previous != null ? previous : 0);
+    }
+
+    public synchronized void release(final Configuration configuration) {
+        Long estimate = committed.remove(configuration);
+        if (estimate != null) {
+            committedMB -= estimate;
+        }
+    }
+
+    private static long readMeminfoMB(final String field) {
+        if (!MEMINFO_FILE.exists()) {
+            return -1;
+        }
+        try {
+            for (final String line : Files.readAllLines(MEMINFO_FILE.toPath(), StandardCharsets.US_ASCII)) {
+                // For example: "MemTotal:       16318480 kB"
+                if (line.startsWith(field + ":")) {
+                    String[] parts = line.substring(field.length() + 1).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+}
@@ -1,13 +1,23 @@
 package main;
 
+import bot_logs.LogArchiver;
 import gui.ManagerPane;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import metrics.FxStallMonitor;
+import metrics.MetricsServer;
+import osbot_client.ClientClassDataArchive;
+
+import java.util.Arrays;
 
 public final class ExplvOSBotManager extends Application {
 
     public static void main(final String[] args) {
+        if (Arrays.asList(args).contains("--headless")) {
+            HeadlessManager.run(args);
+            return;
+        }
         launch(args);
     }
 
@@ -22,6 +32,13 @@ public final class ExplvOSBotManager extends Application {
             Updater.update();
         }
 
+        LogArchiver.startRetentionSweeper();
+        ClientClassDataArchive.probeJavaRuntime();
+
+        if (MetricsServer.startIfEnabled() != null) {
+            FxStallMonitor.start();
+        }
+
         primaryStage.setTitle("Explv's OSBot Manager " + getVersion());
         Scene scene = new Scene(new ManagerPane(), 600, 400);
         scene.getStylesheets().add("css/manager_pane.css");
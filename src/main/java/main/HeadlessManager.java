@@ -0,0 +1,304 @@
+package main;
+
+import bot_logs.LogArchiver;
+import bot_parameters.configuration.Configuration;
+import bot_process.ProcessSampler;
+import bot_process.ProcessTree;
+import file_manager.SettingsFileManager;
+import launcher.LaunchScheduler;
+import launcher.MemoryAdmissionController;
+import metrics.FleetMetrics;
+import metrics.MetricsServer;
+import osbot_client.ClientClassDataArchive;
+import osbot_client.OSBotClient;
+import settings.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+// Runs the configurations of a .config file without starting the JavaFX toolkit, for servers without a display.
+// Started through ExplvOSBotManager with --headless, or directly as the main class where JavaFX graphics are not installed.
+// Usage: --headless --config <file> [--accounts <username,...>] [--status-file <file>] [--status-interval <seconds>] [--max-concurrent-starts <n>]
+public final class HeadlessManager {
+
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final List<Configuration> configurations;
+    private final LaunchScheduler launchScheduler;
+    private final File statusFile;
+    private final long statusIntervalMillis;
+    private final ProcessSampler processSampler = new ProcessSampler();
+
+    private HeadlessManager(final List<Configuration> configurations, final int maxConcurrentStarts, final File statusFile, final long statusIntervalMillis) {
+        this.configurations = configurations;
+        this.statusFile = statusFile;
+        this.statusIntervalMillis = statusIntervalMillis;
+        this.launchScheduler = new LaunchScheduler(maxConcurrentStarts, e -> {
+            System.err.println("Failed to launch configuration: " + e.getMessage());
+            e.printStackTrace();
+        });
+    }
+
+    public static void main(final String[] args) {
+        run(args);
+    }
+
+    public static void run(final String[] args) {
+        Map<String, String> options = parseOptions(args);
+
+        if (!options.containsKey("--config")) {
+            exitWithUsage();
+        }
+
+        // Checked before anything is loaded, a typo should not cost a client download first
+        int maxConcurrentStarts = getPositiveOption(options, "--max-concurrent-starts",
+                Settings.getIntPreference(LaunchScheduler.MAX_CONCURRENT_STARTS_PREFERENCE, LaunchScheduler.DEFAULT_MAX_CONCURRENT_STARTS));
+        long statusIntervalMillis = TimeUnit.SECONDS.toMillis(getPositiveOption(options, "--status-interval", 30));
+
+        List<Configuration> configurations;
+        try {
+            configurations = loadConfigurations(getConfigFile(options.get("--config")), options.get("--accounts"));
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Failed to load config file: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
+
+        if (configurations.isEmpty()) {
+            System.err.println("No configurations to run");
+            System.exit(1);
+        }
+
+        if (OSBotClient.isUpdateRequired() && !OSBotClient.download()) {
+            System.err.println("Failed to download the latest OSBot client");
+            System.exit(1);
+        }
+
+        File statusFile = options.containsKey("--status-file") ? new File(options.get("--status-file")) : null;
+
+        new HeadlessManager(configurations, maxConcurrentStarts, statusFile, statusIntervalMillis).supervise();
+    }
+
+    // A status interval of 0 would write the status in a busy loop, so both numbers have to be at least 1
+    private static int getPositiveOption(final Map<String, String> options, final String name, final int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number >= 1) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println(name + " must be a whole number of at least 1, got \"" + value + "\"");
+        exitWithUsage();
+        return defaultValue;
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("Usage: --headless --config <file> [--accounts <username,...>] [--status-file <file>] [--status-interval <seconds>] [--max-concurrent-starts <n>]");
+        System.exit(2);
+    }
+
+    private void supervise() {
+        Configuration.setRunErrorHandler(e -> System.err.println("Run aborted: " + e.getMessage()));
+
+        LogArchiver.startRetentionSweeper();
+        ClientClassDataArchive.probeJavaRuntime();
+
+        FleetMetrics.setFleet(() -> configurations);
+        MetricsServer.startIfEnabled();
+
+        // Ctrl+C or SIGTERM stops every bot, so no client outlives the manager
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stopAll, "headless-shutdown"));
+
+        System.out.printf("Starting %d configurations, at most %d at once%n", configurations.size(), launchScheduler.getMaxConcurrentStarts());
+        launchScheduler.submitAll(configurations);
+
+        while (true) {
+            sampleProcesses();
+            writeStatus();
+
+            if (configurations.stream().allMatch(this::isFinished)) {
+                System.out.println("All configurations have finished");
+                writeStatus();
+                return;
+            }
+
+            try {
+                Thread.sleep(statusIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void stopAll() {
+        launchScheduler.cancelAll();
+
+        List<Integer> survivingPIDs = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] stops = configurations.stream()
+                .filter(configuration -> !isFinished(configuration))
+                .map(configuration -> configuration.stop().exceptionally(throwable -> {
+                    survivingPIDs.addAll(ProcessTree.getSurvivingPIDs(throwable));
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new);
+
+        if (stops.length == 0) {
+            return;
+        }
+
+        System.out.printf("Stopping %d running configurations%n", stops.length);
+        try {
+            CompletableFuture.allOf(stops).get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!survivingPIDs.isEmpty()) {
+                System.err.println("Processes still running after being killed, PIDs: " + survivingPIDs);
+            }
+        } catch (InterruptedException | TimeoutException e) {
+            System.err.println("Not every bot process exited in time");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sampleProcesses() {
+        if (!ProcessSampler.isSupported()) {
+            return;
+        }
+
+        Map<Configuration, List<Integer>> processGroups = new HashMap<>();
+        for (final Configuration configuration : configurations) {
+            List<Integer> processIDs = configuration.getProcessIDs();
+            if (!processIDs.isEmpty()) {
+                processGroups.put(configuration, processIDs);
+            }
+        }
+
+        Map<Configuration, ProcessSampler.Usage> usages = processSampler.sample(processGroups);
+        for (final Configuration configuration : configurations) {
+            ProcessSampler.Usage usage = usages.get(configuration);
+            if (usage != null) {
+                configuration.setResourceUsage(usage.getCpuPercent(), usage.getResidentBytes());
+            } else {
+                configuration.setResourceUsage(-1, -1);
+            }
+        }
+    }
+
+    private boolean isFinished(final Configuration configuration) {
+        return configuration.getRunFinished() != null && !launchScheduler.isActive(configuration);
+    }
+
+    private String getState(final Configuration configuration) {
+        if (launchScheduler.isQueued(configuration)) {
+            return "QUEUED";
+        }
+        if (launchScheduler.getCrashSupervisor().isRestartPending(configuration)) {
+            return "RESTARTING";
+        }
+        if (isFinished(configuration)) {
+            return "FINISHED";
+        }
+        return configuration.isRunning() ? "RUNNING" : "STARTING";
+    }
+
+    private void writeStatus() {
+        StringWriter status = new StringWriter();
+        PrintWriter statusWriter = new PrintWriter(status);
+
+        Map<String, Long> stateCounts = configurations.stream()
+                .collect(Collectors.groupingBy(this::getState, TreeMap::new, Collectors.counting()));
+
+        MemoryAdmissionController memoryAdmissionController = launchScheduler.getMemoryAdmissionController();
+
+        statusWriter.printf("%s | %s | Starting: %d/%d | Memory: %d/%s MB committed%s%n",
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()),
+                stateCounts.entrySet().stream().map(entry -> entry.getKey() + ": " + entry.getValue()).collect(Collectors.joining(", ")),
+                launchScheduler.getStartsInProgress(),
+                launchScheduler.getMaxConcurrentStarts(),
+                memoryAdmissionController.getCommittedMB(),
+                memoryAdmissionController.hasBudget() ? String.valueOf(memoryAdmissionController.getBudgetMB()) : "unlimited",
+                launchScheduler.isWaitingForMemory() ? " (waiting for memory)" : "");
+
+        for (final Configuration configuration : configurations) {
+            statusWriter.printf("%-30s %-9s %7s %8s  %s%n",
+                    configuration.getRunescapeAccount().getUsername(),
+                    getState(configuration),
+                    configuration.getCpuUsage() >= 0 ? String.format("%.1f%%", configuration.getCpuUsage()) : "",
+                    configuration.getResidentMemory() >= 0 ? String.format("%d MB", configuration.getResidentMemory() / (1024 * 1024)) : "",
+                    configuration.getProcessIDs().stream().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+        statusWriter.flush();
+
+        if (statusFile == null) {
+            System.out.print(status);
+            return;
+        }
+
+        // Written to a temporary file first, so readers never see a half written status
+        try {
+            Path statusPath = statusFile.getAbsoluteFile().toPath();
+            Path tempPath = statusPath.resolveSibling(statusPath.getFileName() + ".tmp");
+            Files.write(tempPath, status.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempPath, statusPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Configuration> loadConfigurations(final File configFile, final String accounts) throws IOException, ClassNotFoundException {
+        Set<String> usernames = accounts == null ? null : Arrays.stream(accounts.split(","))
+                .map(String::trim)
+                .filter(username -> !username.isEmpty())
+                .collect(Collectors.toSet());
+
+        List<Configuration> configurations = new ArrayList<>();
+        for (final Object object : SettingsFileManager.loadSettings(configFile)) {
+            if (object instanceof Configuration) {
+                Configuration configuration = (Configuration) object;
+                if (usernames == null || usernames.contains(configuration.getRunescapeAccount().getUsername())) {
+                    configurations.add(configuration);
+                }
+            }
+        }
+        return configurations;
+    }
+
+    // Config files saved from the GUI live in the manager's config directory
+    private static File getConfigFile(final String path) {
+        File configFile = new File(path);
+        if (!configFile.exists() && !configFile.isAbsolute()) {
+            configFile = new File(Settings.CONFIG_DIR, path);
+        }
+        return configFile;
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(args[i], args[++i]);
+            } else {
+                options.put(args[i], "");
+            }
+        }
+        return options;
+    }
+}
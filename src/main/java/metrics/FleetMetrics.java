@@ -0,0 +1,84 @@
+package metrics;
+
+import bot_parameters.configuration.Configuration;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Counters recorded by the launch, log and GUI paths, read by the MetricsServer renderer.
+// Recording never takes a lock, so a scrape can not slow down a launch or the log output.
+public final class FleetMetrics {
+
+    // Upper bounds in seconds of the launch latency histogram buckets
+    static final double[] LAUNCH_LATENCY_BUCKETS = {5, 10, 20, 30, 45, 60, 90, 120, 180, 300};
+
+    static final LongAdder launches = new LongAdder();
+    static final LongAdder restarts = new LongAdder();
+    static final LongAdder crashes = new LongAdder();
+    static final LongAdder logLines = new LongAdder();
+
+    static final LongAdder[] launchLatencyBuckets = new LongAdder[LAUNCH_LATENCY_BUCKETS.length];
+    static final LongAdder launchLatencyCount = new LongAdder();
+    static final LongAdder launchLatencyNanos = new LongAdder();
+
+    static final LongAdder fxStallNanos = new LongAdder();
+    static final AtomicLong fxMaxDelayNanos = new AtomicLong();
+
+    private static volatile Supplier<Collection<Configuration>> fleet = Collections::emptyList;
+
+    static {
+        for (int i = 0; i < launchLatencyBuckets.length; i++) {
+            launchLatencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    private FleetMetrics() {
+    }
+
+    // The supplier is called from the renderer thread, so it must return a collection that is safe to read there
+    public static void setFleet(final Supplier<Collection<Configuration>> fleetSupplier) {
+        fleet = fleetSupplier;
+    }
+
+    static Collection<Configuration> getFleet() {
+        return fleet.get();
+    }
+
+    public static void recordLaunch(final boolean restart) {
+        launches.increment();
+        if (restart) {
+            restarts.increment();
+        }
+    }
+
+    public static void recordCrash() {
+        crashes.increment();
+    }
+
+    public static void recordLogLine() {
+        logLines.increment();
+    }
+
+    public static void recordLaunchLatency(final long nanos) {
+        double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1);
+        for (int i = 0; i < LAUNCH_LATENCY_BUCKETS.length; i++) {
+            if (seconds <= LAUNCH_LATENCY_BUCKETS[i]) {
+                launchLatencyBuckets[i].increment();
+                break;
+            }
+        }
+        launchLatencyCount.increment();
+        launchLatencyNanos.add(nanos);
+    }
+
+    public static void recordFxDelay(final long delayNanos, final long stallThresholdNanos) {
+        fxMaxDelayNanos.accumulateAndGet(delayNanos, Math::max);
+        if (delayNanos > stallThresholdNanos) {
+            fxStallNanos.add(delayNanos);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Measures how long the FX thread takes to pick up a runnable posted to it.
+// Only one probe is in flight at a time, so a stalled FX thread is not flooded with probes.
+public final class FxStallMonitor {
+
+    private static final long PROBE_INTERVAL_MS = 250;
+    private static final long STALL_THRESHOLD_MS = 100;
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean probing = new AtomicBoolean();
+
+    private FxStallMonitor() {
+    }
+
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fx-stall-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(FxStallMonitor::probe, PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void probe() {
+        if (!probing.compareAndSet(false, true)) {
+            return;
+        }
+        long postedTime = System.nanoTime();
+        Platform.runLater(() -> {
+            FleetMetrics.recordFxDelay(System.nanoTime() - postedTime, TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD_MS));
+            probing.set(false);
+        });
+    }
+}
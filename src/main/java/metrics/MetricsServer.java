@@ -0,0 +1,213 @@
+package metrics;
+
+import bot_parameters.configuration.Configuration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import settings.Settings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Serves fleet metrics in the Prometheus text format on localhost, when a port is set in the preferences.
+// The text is rendered on a timer and scrapes are answered with the last rendering, so a scrape never reads
+// anything the launch or log paths are using.
+public final class MetricsServer {
+
+    public static final String PORT_PREFERENCE = "metrics.port";
+    public static final String PATH = "/metrics";
+
+    private static final long RENDER_INTERVAL_SECONDS = 5;
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer httpServer;
+    private final ScheduledExecutorService renderer;
+
+    private volatile byte[] snapshot = new byte[0];
+    private long previousRenderTime;
+    private long previousLogLines;
+
+    private MetricsServer(final int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext(PATH, this::handle);
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+
+        renderer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Returns null when no port is configured, or the port can not be bound
+    public static MetricsServer startIfEnabled() {
+        int port = Settings.getIntPreference(PORT_PREFERENCE, 0);
+        if (port <= 0) {
+            return null;
+        }
+        try {
+            return start(port);
+        } catch (IOException e) {
+            System.err.println("Failed to start metrics endpoint on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static MetricsServer start(final int port) throws IOException {
+        MetricsServer metricsServer = new MetricsServer(port);
+        metricsServer.renderer.scheduleAtFixedRate(metricsServer::render, 0, RENDER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        metricsServer.httpServer.start();
+        System.out.println("Serving metrics on http://localhost:" + metricsServer.getPort() + PATH);
+        return metricsServer;
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        renderer.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = snapshot;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void render() {
+        try {
+            snapshot = renderText().getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            // A failed rendering keeps the previous snapshot, and must not cancel the timer
+            e.printStackTrace();
+        }
+    }
+
+    private String renderText() {
+        StringBuilder text = new StringBuilder(4096);
+
+        List<Configuration> configurations = new ArrayList<>(FleetMetrics.getFleet());
+        long running = configurations.stream().filter(Configuration::isRunning).count();
+
+        gauge(text, "explv_configurations", "Configurations known to the manager", configurations.size());
+        gauge(text, "explv_configurations_running", "Configurations with a running bot process", running);
+
+        counter(text, "explv_launches_total", "Configuration runs started", FleetMetrics.launches.sum());
+        counter(text, "explv_restarts_total", "Runs started for a configuration that had run before", FleetMetrics.restarts.sum());
+        counter(text, "explv_crashes_total", "Bot processes that exited without being stopped", FleetMetrics.crashes.sum());
+
+        long now = System.nanoTime();
+        long logLines = FleetMetrics.logLines.sum();
+        double logLinesPerSecond = previousRenderTime == 0 ? 0
+                : (logLines - previousLogLines) / ((now - previousRenderTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        previousRenderTime = now;
+        previousLogLines = logLines;
+
+        counter(text, "explv_log_lines_total", "Lines of bot output written to the logs", logLines);
+        gauge(text, "explv_log_lines_per_second", "Bot output lines per second since the previous rendering", logLinesPerSecond);
+
+        header(text, "explv_launch_latency_seconds", "Time from starting a bot process until the client has loaded", "histogram");
+        long cumulativeCount = 0;
+        for (int i = 0; i < FleetMetrics.LAUNCH_LATENCY_BUCKETS.length; i++) {
+            cumulativeCount += FleetMetrics.launchLatencyBuckets[i].sum();
+            text.append("explv_launch_latency_seconds_bucket{le=\"").append(formatValue(FleetMetrics.LAUNCH_LATENCY_BUCKETS[i]))
+                    .append("\"} ").append(cumulativeCount).append('\n');
+        }
+        long launchLatencyCount = FleetMetrics.launchLatencyCount.sum();
+        text.append("explv_launch_latency_seconds_bucket{le=\"+Inf\"} ").append(launchLatencyCount).append('\n');
+        text.append("explv_launch_latency_seconds_sum ").append(formatValue(toSeconds(FleetMetrics.launchLatencyNanos.sum()))).append('\n');
+        text.append("explv_launch_latency_seconds_count ").append(launchLatencyCount).append('\n');
+
+        counter(text, "explv_fx_stall_seconds_total", "Time runnables waited for a stalled FX thread", toSeconds(FleetMetrics.fxStallNanos.sum()));
+        gauge(text, "explv_fx_max_delay_seconds", "Longest wait for the FX thread since the previous rendering", toSeconds(FleetMetrics.fxMaxDelayNanos.getAndSet(0)));
+
+        // Summed per account, two configurations sharing an account would otherwise give the same series twice
+        Map<String, Double> cpuUsage = new TreeMap<>();
+        Map<String, Long> residentMemory = new TreeMap<>();
+        for (final Configuration configuration : configurations) {
+            if (!configuration.isRunning()) {
+                continue;
+            }
+            if (configuration.getCpuUsage() >= 0) {
+                cpuUsage.merge(getAccount(configuration), configuration.getCpuUsage(), Double::sum);
+            }
+            if (configuration.getResidentMemory() >= 0) {
+                residentMemory.merge(getAccount(configuration), configuration.getResidentMemory(), Long::sum);
+            }
+        }
+
+        header(text, "explv_bot_cpu_percent", "CPU used by the processes of an account's bots, 100 is one core", "gauge");
+        cpuUsage.forEach((account, usage) -> text.append("explv_bot_cpu_percent{account=\"").append(escapeLabel(account))
+                .append("\"} ").append(formatValue(usage)).append('\n'));
+
+        header(text, "explv_bot_resident_memory_bytes", "Resident memory of the processes of an account's bots", "gauge");
+        residentMemory.forEach((account, bytes) -> text.append("explv_bot_resident_memory_bytes{account=\"").append(escapeLabel(account))
+                .append("\"} ").append(bytes).append('\n'));
+
+        return text.toString();
+    }
+
+    private static void counter(final StringBuilder text, final String name, final String help, final double value) {
+        header(text, name, help, "counter");
+        text.append(name).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static void gauge(final StringBuilder text, final String name, final String help, final double value) {
+        header(text, name, help, "gauge");
+        text.append(name).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static void header(final StringBuilder text, final String name, final String help, final String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String formatValue(final double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static double toSeconds(final long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static String getAccount(final Configuration configuration) {
+        return configuration.getRunescapeAccount() != null ? configuration.getRunescapeAccount().getUsername() : "";
+    }
+
+    private static String escapeLabel(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,264 @@
+package osbot_client;
+
+import settings.Settings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Builds a class data sharing archive of the OSBot client, so every bot JVM maps the same pre-parsed classes
+// read-only instead of loading and verifying them from the jar itself.
+// The archive is dumped from a class list, so the client never has to be run to build it.
+public final class ClientClassDataArchive {
+
+    public static final String ENABLED_PREFERENCE = "cds.enabled";
+
+    private static final String JAVA_COMMAND = "java";
+    // Java 10 only shares application classes with -XX:+UseAppCDS, which later versions warn about, so it is left out
+    private static final int MIN_JAVA_VERSION = 11;
+    private static final long PROBE_TIMEOUT_SECONDS = 30;
+    private static final long BUILD_TIMEOUT_MINUTES = 5;
+
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cds-builder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Jars that have an archive build queued, or whose build failed, so a failing build is not retried on every launch
+    private static final Set<String> builds = ConcurrentHashMap.newKeySet();
+
+    private static volatile JavaRuntime javaRuntime;
+
+    private ClientClassDataArchive() {
+    }
+
+    // Empty while there is no archive, bots started before buildIfMissing has built it simply run without it.
+    // The first call probes the java bots are started with, unless probeJavaRuntime() has done so already.
+    public static List<String> getJvmArguments(final File clientJar) {
+        if (!isEnabled()) {
+            return Collections.emptyList();
+        }
+        JavaRuntime runtime = getJavaRuntime();
+        if (!runtime.supportsAppCDS()) {
+            return Collections.emptyList();
+        }
+
+        File archive = getArchiveFile(clientJar, runtime);
+        if (archive.isFile()) {
+            return Arrays.asList("-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-Xshare:auto");
+        }
+        return Collections.emptyList();
+    }
+
+    // Called on startup, so an archive built in an earlier session is used from the first launch without waiting for the probe
+    public static void probeJavaRuntime() {
+        if (isEnabled()) {
+            builder.execute(ClientClassDataArchive::getJavaRuntime);
+        }
+    }
+
+    // Called when a bot is about to be started, queues a build in the background if there is no archive yet
+    public static void buildIfMissing(final File clientJar) {
+        if (isEnabled() && builds.add(clientJar.getAbsolutePath())) {
+            builder.execute(() -> build(clientJar));
+        }
+    }
+
+    public static void rebuild(final File clientJar) {
+        builds.remove(clientJar.getAbsolutePath());
+        buildIfMissing(clientJar);
+    }
+
+    private static boolean isEnabled() {
+        return Boolean.parseBoolean(Settings.getPreference(ENABLED_PREFERENCE, "true"));
+    }
+
+    private static void build(final File clientJar) {
+        JavaRuntime runtime = getJavaRuntime();
+        if (!runtime.supportsAppCDS()) {
+            System.out.printf("Bots are started with Java %d, class data sharing for the OSBot client needs Java %d or newer%n",
+                    runtime.majorVersion, MIN_JAVA_VERSION);
+            return;
+        }
+
+        File archive = getArchiveFile(clientJar, runtime);
+        if (archive.isFile() || !clientJar.isFile()) {
+            return;
+        }
+
+        File classList = new File(Settings.CDS_DIR, archive.getName() + ".classlist");
+        File tempArchive = new File(Settings.CDS_DIR, archive.getName() + ".tmp");
+        File buildLog = new File(Settings.CDS_DIR, archive.getName() + ".log");
+
+        long startTime = System.currentTimeMillis();
+        try {
+            writeClassList(clientJar, runtime, classList);
+
+            // The class path has to match the one bots are started with exactly, or the JVM ignores the archive
+            Process process = new ProcessBuilder(JAVA_COMMAND,
+                    "-Xshare:dump",
+                    "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+                    "-XX:SharedArchiveFile=" + tempArchive.getAbsolutePath(),
+                    "-cp", clientJar.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(buildLog)
+                    .start();
+
+            if (!process.waitFor(BUILD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                System.err.println("Timed out building class data archive for " + clientJar.getName());
+                return;
+            }
+
+            if (process.exitValue() != 0 || !tempArchive.isFile()) {
+                System.err.println("Failed to build class data archive for " + clientJar.getName() + ", see " + buildLog);
+                return;
+            }
+
+            Files.move(tempArchive.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            buildLog.delete();
+            System.out.printf("Built class data archive for %s in %d ms%n", clientJar.getName(), System.currentTimeMillis() - startTime);
+
+            deleteStaleArchives();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            classList.delete();
+            tempArchive.delete();
+        }
+    }
+
+    // The JDK's own startup classes first, then every class in the client jar
+    private static void writeClassList(final File clientJar, final JavaRuntime runtime, final File classList) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(classList), StandardCharsets.UTF_8))) {
+            File jdkClassList = new File(new File(runtime.javaHome, "lib"), "classlist");
+            if (jdkClassList.isFile()) {
+                for (final String line : Files.readAllLines(jdkClassList.toPath(), StandardCharsets.UTF_8)) {
+                    // Lambda form entries are only understood by the JDK's own archive build
+                    if (!line.startsWith("@") && !line.startsWith("#")) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+
+            try (JarFile jarFile = new JarFile(clientJar)) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                        writer.write(name, 0, name.length() - ".class".length());
+                        writer.write('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    // Archives of clients that are no longer installed, or of a previous Java installation
+    private static void deleteStaleArchives() {
+        File[] archives = new File(Settings.CDS_DIR).listFiles((dir, name) -> name.endsWith(".jsa"));
+        File[] clients = new File(Settings.OSBOT_CLIENT_DIR).listFiles(File::isFile);
+        if (archives == null || clients == null) {
+            return;
+        }
+
+        Set<String> currentArchives = new HashSet<>();
+        for (final File client : clients) {
+            currentArchives.add(getArchiveFile(client, getJavaRuntime()).getName());
+        }
+
+        for (final File archive : archives) {
+            if (!currentArchives.contains(archive.getName()) && !archive.delete()) {
+                System.err.println("Failed to delete stale class data archive: " + archive);
+            }
+        }
+    }
+
+    // Keyed by jar and Java installation, the JVM refuses archives made for a different jar or JVM anyway
+    private static File getArchiveFile(final File clientJar, final JavaRuntime runtime) {
+        String name = String.format("%s-%x-%s.jsa", clientJar.getName(), clientJar.lastModified(), runtime.id);
+        return new File(Settings.CDS_DIR, name);
+    }
+
+    private static synchronized JavaRuntime getJavaRuntime() {
+        if (javaRuntime == null) {
+            javaRuntime = JavaRuntime.probe();
+        }
+        return javaRuntime;
+    }
+
+    private static final class JavaRuntime {
+
+        private static final Pattern PROPERTY_PATTERN = Pattern.compile("^\\s*([\\w.]+) = (.*)$", Pattern.MULTILINE);
+
+        private final int majorVersion;
+        private final String javaHome;
+        private final String id;
+
+        private JavaRuntime(final int majorVersion, final String javaHome, final String id) {
+            this.majorVersion = majorVersion;
+            this.javaHome = javaHome;
+            this.id = id;
+        }
+
+        private boolean supportsAppCDS() {
+            return majorVersion >= MIN_JAVA_VERSION;
+        }
+
+        // Bots are started with whatever java is on the PATH, which is not necessarily the JVM running the manager
+        private static JavaRuntime probe() {
+            try {
+                Process process = new ProcessBuilder(JAVA_COMMAND, "-XshowSettings:properties", "-version")
+                        .redirectErrorStream(true)
+                        .start();
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try (InputStream inputStream = process.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, bytesRead);
+                    }
+                }
+                process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+                Map<String, String> properties = new HashMap<>();
+                Matcher matcher = PROPERTY_PATTERN.matcher(output.toString(StandardCharsets.UTF_8.name()));
+                while (matcher.find()) {
+                    properties.put(matcher.group(1), matcher.group(2).trim());
+                }
+
+                // "1.8" up to Java 8, "9", "10", ... afterwards
+                String specificationVersion = properties.getOrDefault("java.specification.version", "");
+                if (specificationVersion.startsWith("1.")) {
+                    specificationVersion = specificationVersion.substring(2);
+                }
+
+                String javaHome = properties.getOrDefault("java.home", "");
+                String vmVersion = properties.getOrDefault("java.vm.version", "");
+
+                return new JavaRuntime(Integer.parseInt(specificationVersion), javaHome, Integer.toHexString((javaHome + vmVersion).hashCode()));
+            } catch (IOException | NumberFormatException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new JavaRuntime(-1, "", "");
+        }
+    }
+}
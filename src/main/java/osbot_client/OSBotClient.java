@@ -18,7 +18,7 @@ import java.util.regex.Pattern;
 public class OSBotClient {
     private static final String OSBOT_DOWNLOAD_URL = "https://osbot.org/mvc/get";
 
-    private static String latestLocalVersion;
+    private static volatile String latestLocalVersion;
 
     public static boolean isUpdateRequired() {
         Optional<String> latestLocalVersion = getLatestLocalVersion();
@@ -48,7 +48,11 @@ public class OSBotClient {
         if (clients == null) {
             return Optional.empty();
         }
-        return Arrays.stream(clients).map(File::getName).max(String::compareTo);
+
+        // Remembered until the next download, so building a command does not list the directory every time
+        Optional<String> latestVersion = Arrays.stream(clients).map(File::getName).max(String::compareTo);
+        latestVersion.ifPresent(version -> latestLocalVersion = version);
+        return latestVersion;
     }
 
     public static boolean download() {
@@ -69,6 +73,9 @@ public class OSBotClient {
 
             OSBotClient.latestLocalVersion = filename.get();
 
+            // Bots started before the new archive is ready run without class data sharing
+            ClientClassDataArchive.rebuild(outputFile);
+
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -1,7 +1,8 @@
 package settings;
 
-import java.io.File;
+import java.io.*;
 import java.nio.file.Paths;
+import java.util.Properties;
 
 public class Settings {
     public static final String STORAGE_DIR = Paths.get(System.getProperty("user.home"), "explv_osbot_manager").toString();
@@ -9,6 +10,10 @@ public class Settings {
     public static final String LOGS_DIR = Paths.get(STORAGE_DIR, "logs").toString();
     public static final String OSBOT_CLIENT_DIR = Paths.get(STORAGE_DIR, "osbot_client").toString();
     public static final String TEMP_DIR = Paths.get(STORAGE_DIR, "temp").toString();
+    public static final String CDS_DIR = Paths.get(STORAGE_DIR, "cds").toString();
+    public static final String PREFERENCES_FILE = Paths.get(STORAGE_DIR, "manager.properties").toString();
+
+    private static final Properties preferences = new Properties();
 
     static {
         makeDirs(STORAGE_DIR);
@@ -16,6 +21,7 @@ public class Settings {
         makeDirs(LOGS_DIR);
         makeDirs(OSBOT_CLIENT_DIR);
         makeDirs(TEMP_DIR);
+        makeDirs(CDS_DIR);
 
         File oldConfigDir = Paths.get(System.getProperty("user.home"), "ExplvOSBotManager", "Configurations").toFile();
         if (oldConfigDir.exists()) {
@@ -29,6 +35,41 @@ public class Settings {
                 }
             }
         }
+
+        File preferencesFile = new File(PREFERENCES_FILE);
+        if (preferencesFile.exists()) {
+            try (Reader reader = new BufferedReader(new FileReader(preferencesFile))) {
+                preferences.load(reader);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static synchronized String getPreference(final String key, final String defaultValue) {
+        return preferences.getProperty(key, defaultValue);
+    }
+
+    public static synchronized int getIntPreference(final String key, final int defaultValue) {
+        String value = preferences.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for preference " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static synchronized void setPreference(final String key, final String value) {
+        preferences.setProperty(key, value);
+        try (Writer writer = new BufferedWriter(new FileWriter(PREFERENCES_FILE))) {
+            preferences.store(writer, "Explv's OSBot Manager preferences");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     private static boolean makeDirs(final String dir) {
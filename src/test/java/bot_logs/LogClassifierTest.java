@@ -0,0 +1,61 @@
+package bot_logs;
+
+import org.junit.After;
+import org.junit.Test;
+import settings.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogClassifierTest {
+
+    @After
+    public void tearDown() {
+        Settings.setPreference(LogClassifier.STOP_PATTERNS_PREFERENCE, "");
+    }
+
+    @Test
+    public void tooManyStopPatternsKeepBuiltInPatterns() {
+        StringBuilder stopPatterns = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            stopPatterns.append("stop ").append(i).append(" now|");
+        }
+        Settings.setPreference(LogClassifier.STOP_PATTERNS_PREFERENCE, stopPatterns.toString());
+
+        LogClassifier classifier = LogClassifier.getDefault();
+        assertSame(classifier, LogClassifier.getDefault());
+
+        assertEquals(LogEvent.CLIENT_LOADED, classifyOne(classifier, "[INFO] Successfully loaded OSBot!"));
+        assertEquals(LogEvent.SCRIPT_EXITED, classifyOne(classifier, "Script Tutorial Island has exited!"));
+        assertEquals(LogEvent.STOP_PATTERN_MATCHED, classifyOne(classifier, "Reached stop 0 now"));
+        assertTrue(classify(classifier, "stop 99 now").isEmpty());
+    }
+
+    @Test
+    public void builderMatchesCaseAndSuffix() {
+        LogClassifier classifier = new LogClassifier.Builder()
+                .addPattern("Out of food", LogEvent.STOP_PATTERN_MATCHED, false)
+                .addPattern("Bot exited", LogEvent.BOT_EXITED, true)
+                .addSuffixPattern("has exited!", "Script", LogEvent.SCRIPT_EXITED)
+                .build();
+
+        assertEquals(LogEvent.STOP_PATTERN_MATCHED, classifyOne(classifier, "OUT OF FOOD, stopping"));
+        assertTrue(classify(classifier, "bot exited").isEmpty());
+        assertTrue(classify(classifier, "Script has exited! really").isEmpty());
+        assertEquals(LogEvent.SCRIPT_EXITED, classifyOne(classifier, "Script Foo has exited!  "));
+    }
+
+    private static LogEvent classifyOne(final LogClassifier classifier, final String line) {
+        List<LogEvent> events = classify(classifier, line);
+        assertEquals(events.toString(), 1, events.size());
+        return events.get(0);
+    }
+
+    private static List<LogEvent> classify(final LogClassifier classifier, final String line) {
+        List<LogEvent> events = new ArrayList<>();
+        classifier.classify(line, (event, matchedLine) -> events.add(event));
+        return events;
+    }
+}
@@ -0,0 +1,94 @@
+package bot_logs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogLineIndexTest {
+
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        logFile = File.createTempFile("log-line-index", ".log");
+    }
+
+    @After
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    @Test
+    public void indexesTailBeforeOlderLines() throws IOException {
+        writeLines(0, 5_000);
+
+        try (LogLineIndex index = LogLineIndex.open(logFile)) {
+            assertEquals(1_000, index.indexTail());
+            assertEquals(0, index.getOlderLineCount());
+            assertEquals("line 4000", index.getLine(0));
+            assertEquals("line 4999", index.getLine(999));
+
+            assertEquals(4_000, index.indexOlderContent());
+            assertEquals(1_000, index.getLineCount());
+            assertEquals("line 0", index.getLine(-4_000));
+            assertEquals("line 3999", index.getLine(-1));
+            // The tail keeps its numbers
+            assertEquals("line 4000", index.getLine(0));
+        }
+    }
+
+    @Test
+    public void shortFileIsAllTail() throws IOException {
+        writeLines(0, 10);
+
+        try (LogLineIndex index = LogLineIndex.open(logFile)) {
+            assertEquals(10, index.indexTail());
+            assertEquals(0, index.indexOlderContent());
+            assertEquals("line 0", index.getLine(0));
+        }
+    }
+
+    @Test
+    public void updatesWhileOlderLinesAreMissing() throws IOException {
+        writeLines(0, 3_000);
+
+        try (LogLineIndex index = LogLineIndex.open(logFile)) {
+            index.indexTail();
+            writeLines(3_000, 500);
+            assertEquals(1_500, index.update());
+            assertEquals("line 3499", index.getLine(1_499));
+
+            assertEquals(2_000, index.indexOlderContent());
+            assertEquals("line 1999", index.getLine(-1));
+            assertEquals("line 3499", index.getLine(1_499));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void olderLinesAreNotReadableBeforeTheyAreIndexed() throws IOException {
+        writeLines(0, 2_000);
+
+        try (LogLineIndex index = LogLineIndex.open(logFile)) {
+            index.indexTail();
+            index.getLine(-1);
+        }
+    }
+
+    private void writeLines(final int from, final int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            lines.add("line " + i);
+        }
+        Files.write(logFile.toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+}
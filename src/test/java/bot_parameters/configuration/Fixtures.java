@@ -0,0 +1,27 @@
+package bot_parameters.configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Test resources, such as the captured world lists under /worlds
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static byte[] read(final String name) throws IOException {
+        try (InputStream inputStream = Fixtures.class.getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new IOException("Missing fixture " + name);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
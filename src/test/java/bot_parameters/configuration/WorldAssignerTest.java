@@ -0,0 +1,121 @@
+package bot_parameters.configuration;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WorldAssignerTest {
+
+    // Well clear of real world numbers, the loads are shared with every other test in the JVM
+    private static final int FIRST_WORLD = 1001;
+
+    private final List<WorldAssigner.Assignment> assignments = new ArrayList<>();
+    private final List<WorldAssigner.Pool> pools = new ArrayList<>();
+
+    // Selections look their worlds up in the registry, with these in it the world list is never fetched
+    @BeforeClass
+    public static void registerWorlds() {
+        WorldRegistry.register(getWorlds(200));
+    }
+
+    @After
+    public void tearDown() {
+        assignments.forEach(WorldAssigner.Assignment::release);
+        pools.forEach(WorldAssigner.Pool::release);
+    }
+
+    @Test
+    public void spreadsBotsOverTheLeastLoadedWorlds() {
+        WorldAssigner.Pool pool = getPool(getSelection(4));
+
+        for (int i = 0; i < 8; i++) {
+            assignments.add(pool.assign().get());
+        }
+
+        for (int world = FIRST_WORLD; world < FIRST_WORLD + 4; world++) {
+            assertEquals(2, WorldAssigner.getBots(world));
+        }
+    }
+
+    @Test
+    public void penaltyIsOnlyLookedUpForTheLeastLoadedWorlds() {
+        WorldAssigner.Pool pool = getPool(getSelection(200));
+        AtomicInteger lookups = new AtomicInteger();
+
+        // Every world is idle, each one further down the order is a little better
+        WorldAssigner.Assignment assignment = pool.assign(world -> {
+            lookups.incrementAndGet();
+            return 1 - (world - FIRST_WORLD) / 1000.0;
+        }).get();
+        assignments.add(assignment);
+
+        assertTrue(lookups.get() < 200);
+        assertEquals(FIRST_WORLD + lookups.get() - 1, assignment.getWorld().getNumber());
+    }
+
+    @Test
+    public void penaltyOutweighsLoad() {
+        WorldAssigner.Pool pool = getPool(getSelection(3));
+        assignments.add(pool.assign().get());
+
+        // The first world already has a bot, but the others are two bots worse off
+        WorldAssigner.Assignment assignment = pool.assign(world -> world == FIRST_WORLD ? 0 : 2).get();
+        assignments.add(assignment);
+
+        assertEquals(FIRST_WORLD, assignment.getWorld().getNumber());
+    }
+
+    @Test
+    public void emptyPoolAssignsNothing() {
+        assertFalse(getPool(WorldSelection.empty()).assign().isPresent());
+    }
+
+    @Test
+    public void poolIsSharedWhileHeld() {
+        WorldAssigner.Pool pool = getPool(getSelection(5));
+        WorldAssigner.Pool sharedPool = getPool(getSelection(5));
+        assertSame(pool, sharedPool);
+
+        pools.remove(sharedPool);
+        sharedPool.release();
+        assertSame(pool, getPool(getSelection(5)));
+    }
+
+    @Test
+    public void releasedPoolIsDropped() {
+        WorldAssigner.Pool pool = WorldAssigner.getPool(getSelection(6));
+        assignments.add(pool.assign().get());
+        pool.release();
+
+        WorldAssigner.Pool newPool = getPool(getSelection(6));
+        assertNotSame(pool, newPool);
+        // The loads outlive the pool, the bot still running is seen by the new one
+        WorldAssigner.Assignment assignment = newPool.assign().get();
+        assignments.add(assignment);
+        assertEquals(FIRST_WORLD + 1, assignment.getWorld().getNumber());
+    }
+
+    private WorldAssigner.Pool getPool(final WorldSelection selection) {
+        WorldAssigner.Pool pool = WorldAssigner.getPool(selection);
+        pools.add(pool);
+        return pool;
+    }
+
+    private static WorldSelection getSelection(final int size) {
+        return WorldSelection.of(getWorlds(size));
+    }
+
+    private static List<World> getWorlds(final int size) {
+        List<World> worlds = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            worlds.add(new World(WorldType.MEMBERS, FIRST_WORLD + i, ""));
+        }
+        return worlds;
+    }
+}
@@ -0,0 +1,36 @@
+package bot_parameters.configuration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WorldAttributeTest {
+
+    // Saved world rules hold these masks, changing one changes what every saved rule means
+    @Test
+    public void masksAreStable() {
+        assertEquals(1, WorldAttribute.MEMBERS.getMask());
+        assertEquals(1 << 1, WorldAttribute.PVP.getMask());
+        assertEquals(1 << 4, WorldAttribute.DEADMAN.getMask());
+        assertEquals(1 << 10, WorldAttribute.BETA.getMask());
+        assertEquals(1 << 11, WorldAttribute.US.getMask());
+        assertEquals(1 << 14, WorldAttribute.AUSTRALIA.getMask());
+    }
+
+    @Test
+    public void masksAreDistinct() {
+        int masks = 0;
+        for (final WorldAttribute attribute : WorldAttribute.values()) {
+            assertEquals(attribute + " shares a bit", 0, masks & attribute.getMask());
+            masks |= attribute.getMask();
+        }
+    }
+
+    @Test
+    public void maskCombinesTypeRegionAndActivities() {
+        int mask = WorldAttribute.getMask(WorldType.MEMBERS, "Deadman & Bounty Hunter", WorldAttribute.UK);
+
+        assertEquals(WorldAttribute.MEMBERS.getMask() | WorldAttribute.UK.getMask()
+                | WorldAttribute.DEADMAN.getMask() | WorldAttribute.BOUNTY_HUNTER.getMask(), mask);
+    }
+}
@@ -0,0 +1,154 @@
+package bot_parameters.configuration;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import settings.Settings;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class WorldListCacheTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int FIXTURE_WORLDS = 200;
+
+    private final Path cachePath = Paths.get(WorldListCache.CACHE_FILE);
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        byte[] page = Fixtures.read("/worlds/slu.html");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slu", exchange -> {
+            requests.incrementAndGet();
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(200, page.length);
+                exchange.getResponseBody().write(page);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        Settings.setPreference(WorldSource.SOURCE_PREFERENCE, "html");
+        Settings.setPreference(WorldSource.URL_PREFERENCE, "http://127.0.0.1:" + server.getAddress().getPort() + "/slu");
+
+        Files.deleteIfExists(cachePath);
+        WorldListCache.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        WorldListCache.reset();
+        Files.deleteIfExists(cachePath);
+    }
+
+    @Test
+    public void servesFreshCacheWithoutFetching() throws IOException {
+        writeCache(System.currentTimeMillis());
+
+        List<World> worlds = WorldListCache.getWorlds();
+
+        assertEquals(2, worlds.size());
+        assertEquals(301, worlds.get(0).getNumber());
+        assertEquals(WorldAttribute.UK, worlds.get(1).getRegion());
+        assertEquals("Castle Wars", worlds.get(1).getDetail());
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void refreshesStaleCacheInBackground() throws Exception {
+        writeCache(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+
+        // The stale list is served straight away, the fetch happens behind it
+        List<World> fetchedWorlds = awaitRefresh(() -> assertEquals(2, WorldListCache.getWorlds().size()));
+        assertEquals(FIXTURE_WORLDS, fetchedWorlds.size());
+        assertEquals(FIXTURE_WORLDS, WorldListCache.getWorlds().size());
+        assertEquals(1, requests.get());
+
+        // The fetched list was written back and is served from the file after a restart
+        WorldListCache.reset();
+        assertEquals(FIXTURE_WORLDS, WorldListCache.getWorlds().size());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void failedRefreshKeepsListAndWaitsBeforeRetrying() throws Exception {
+        status = 500;
+        writeCache(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+
+        try {
+            WorldListCache.refresh().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("The refresh should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // The cache is still stale, but within the retry delay nothing is fetched again
+        status = 200;
+        List<World> worlds = WorldListCache.getWorlds();
+        assertEquals(2, worlds.size());
+        assertEquals("Castle Wars", worlds.get(1).getDetail());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void corruptCacheIsReplacedByFetchedList() throws Exception {
+        Files.write(cachePath, "not a time\n301\tF2P".getBytes(StandardCharsets.UTF_8));
+
+        List<World> fetchedWorlds = awaitRefresh(() -> assertTrue(WorldListCache.getWorlds().isEmpty()));
+        assertEquals(FIXTURE_WORLDS, fetchedWorlds.size());
+
+        WorldListCache.reset();
+        assertEquals(FIXTURE_WORLDS, WorldListCache.getWorlds().size());
+        assertEquals(1, requests.get());
+    }
+
+    // Runs the action, which is expected to start a background refresh, and waits for the listeners to be told
+    private List<World> awaitRefresh(final Runnable action) throws InterruptedException {
+        CountDownLatch notified = new CountDownLatch(1);
+        AtomicReference<List<World>> fetchedWorlds = new AtomicReference<>();
+        Consumer<List<World>> listener = worlds -> {
+            fetchedWorlds.set(worlds);
+            notified.countDown();
+        };
+
+        WorldListCache.addListener(listener);
+        try {
+            action.run();
+            assertTrue("No refresh completed", notified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            WorldListCache.removeListener(listener);
+        }
+        return fetchedWorlds.get();
+    }
+
+    private void writeCache(final long fetchedTime) throws IOException {
+        List<String> lines = Arrays.asList(
+                String.valueOf(fetchedTime),
+                "301\tF2P\t1204\tUS\tTrade - Free",
+                "302\tMEMBERS\t87\tUK\tCastle Wars");
+        Files.write(cachePath, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,29 @@
+package bot_parameters.configuration;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+public class WorldSelectionTest {
+
+    @Test
+    public void equalSelectionsAreInterned() {
+        WorldSelection selection = WorldSelection.of(new int[]{301, 302, 330}, new int[]{302});
+
+        assertSame(selection, WorldSelection.of(new int[]{330, 301, 302}, new int[]{302}));
+        assertNotSame(selection, WorldSelection.of(new int[]{301, 302, 330}, new int[0]));
+    }
+
+    @Test
+    public void unusedSelectionsAreNotKeptAlive() throws InterruptedException {
+        WeakReference<WorldSelection> reference = new WeakReference<>(WorldSelection.of(new int[]{2001, 2002}, new int[0]));
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(reference.get());
+    }
+}
@@ -0,0 +1,56 @@
+package bot_parameters.configuration;
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+// Times each world source over the checked-in fixtures, run by hand rather than as part of the tests:
+//   mvn test-compile exec:java -Dexec.mainClass=bot_parameters.configuration.WorldSourceBenchmark -Dexec.classpathScope=test
+// The fastest of several rounds is reported, with the bytes allocated per parse on the same thread.
+public final class WorldSourceBenchmark {
+
+    private static final String URL = "http://127.0.0.1/";
+    private static final int WARM_UP_PARSES = 3000;
+    private static final int ROUNDS = 10;
+    private static final int PARSES_PER_ROUND = 1000;
+
+    private WorldSourceBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        byte[] page = Fixtures.read("/worlds/slu.html");
+        byte[] binary = Fixtures.read("/worlds/slr.ws");
+        System.out.printf("slu page %d bytes, slr.ws %d bytes%n", page.length, binary.length);
+
+        benchmark(new JsoupWorldSource(URL), page);
+        benchmark(new HTMLWorldSource(URL), page);
+        benchmark(new BinaryWorldSource(URL), binary);
+    }
+
+    private static void benchmark(final WorldSource source, final byte[] data) throws IOException {
+        for (int i = 0; i < WARM_UP_PARSES; i++) {
+            source.read(new ByteArrayInputStream(data));
+        }
+
+        long fastestNanos = Long.MAX_VALUE;
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long startBytes = getAllocatedBytes();
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < PARSES_PER_ROUND; i++) {
+                source.read(new ByteArrayInputStream(data));
+            }
+            fastestNanos = Math.min(fastestNanos, (System.nanoTime() - startNanos) / PARSES_PER_ROUND);
+            allocatedBytes = Math.min(allocatedBytes, (getAllocatedBytes() - startBytes) / PARSES_PER_ROUND);
+        }
+
+        System.out.printf("%-18s %9.1f us/parse %7d KB allocated/parse%n",
+                source.getClass().getSimpleName(), fastestNanos / 1000.0, allocatedBytes / 1024);
+    }
+
+    private static long getAllocatedBytes() {
+        return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
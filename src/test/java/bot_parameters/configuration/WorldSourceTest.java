@@ -0,0 +1,111 @@
+package bot_parameters.configuration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// The three parsers read the same captured world list, the slu page and the slr.ws blob describe the same 200 worlds
+public class WorldSourceTest {
+
+    private static final String URL = "http://127.0.0.1/";
+    private static final int FIXTURE_WORLDS = 200;
+
+    @Test
+    public void sourcesReadTheSameWorlds() throws IOException {
+        List<World> html = read(new HTMLWorldSource(URL), "/worlds/slu.html");
+        List<World> jsoup = read(new JsoupWorldSource(URL), "/worlds/slu.html");
+        List<World> binary = read(new BinaryWorldSource(URL), "/worlds/slr.ws");
+
+        assertEquals(FIXTURE_WORLDS, html.size());
+        assertEquals(FIXTURE_WORLDS, jsoup.size());
+        assertEquals(FIXTURE_WORLDS, binary.size());
+
+        for (int i = 0; i < FIXTURE_WORLDS; i++) {
+            World world = html.get(i);
+            for (final World other : Arrays.asList(jsoup.get(i), binary.get(i))) {
+                assertEquals(world, other);
+                assertEquals(world.getPopulation(), other.getPopulation());
+                assertEquals(world.getRegion(), other.getRegion());
+            }
+            // Only the Jsoup parser leaves entities escaped, see entitiesAreOnlyDecodedByTheStreamingParsers
+            assertEquals(world.getDetail(), binary.get(i).getDetail());
+            assertEquals(world.getDetail(), jsoup.get(i).getDetail().replace("&amp;", "&"));
+            assertEquals(world.getAttributes(), binary.get(i).getAttributes());
+        }
+    }
+
+    @Test
+    public void rowsOutsideTheTableAreIgnored() throws IOException {
+        // The fixture has a row inside a script and one inside a comment before the table
+        List<World> worlds = read(new HTMLWorldSource(URL), "/worlds/slu.html");
+
+        assertEquals(301, worlds.get(0).getNumber());
+        assertEquals(500, worlds.get(FIXTURE_WORLDS - 1).getNumber());
+    }
+
+    @Test
+    public void offlineWorldsHaveNoPopulation() throws IOException {
+        for (final WorldSource source : new WorldSource[]{new HTMLWorldSource(URL), new JsoupWorldSource(URL)}) {
+            assertEquals(-1, read(source, "/worlds/slu.html").get(49).getPopulation());
+        }
+        assertEquals(-1, read(new BinaryWorldSource(URL), "/worlds/slr.ws").get(49).getPopulation());
+    }
+
+    @Test
+    public void entitiesAreOnlyDecodedByTheStreamingParsers() throws IOException {
+        World html = findDeadmanWorld(read(new HTMLWorldSource(URL), "/worlds/slu.html"));
+        World jsoup = findDeadmanWorld(read(new JsoupWorldSource(URL), "/worlds/slu.html"));
+        World binary = findDeadmanWorld(read(new BinaryWorldSource(URL), "/worlds/slr.ws"));
+
+        assertEquals("Deadman & Bounty Hunter", html.getDetail());
+        assertEquals("Deadman & Bounty Hunter", binary.getDetail());
+        assertEquals("Deadman &amp; Bounty Hunter", jsoup.getDetail());
+        assertTrue(html.hasAttribute(WorldAttribute.DEADMAN));
+        assertTrue(jsoup.hasAttribute(WorldAttribute.DEADMAN));
+    }
+
+    @Test
+    public void truncatedBinaryListFails() throws IOException {
+        byte[] data = Fixtures.read("/worlds/slr.ws");
+
+        // Cut inside the header, the declared length, and the middle of a world
+        for (final int length : new int[]{0, 3, 6, data.length / 2, data.length - 1}) {
+            try {
+                new BinaryWorldSource(URL).read(new ByteArrayInputStream(Arrays.copyOf(data, length)));
+                fail("Read a world list cut to " + length + " bytes");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void binaryListWithShortWorldCountFails() throws IOException {
+        // The length is intact but the count promises one world more than the data holds
+        byte[] data = Fixtures.read("/worlds/slr.ws");
+        data[5]++;
+
+        try {
+            new BinaryWorldSource(URL).read(new ByteArrayInputStream(data));
+            fail("Read more worlds than the list holds");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static List<World> read(final WorldSource source, final String fixture) throws IOException {
+        return source.read(new ByteArrayInputStream(Fixtures.read(fixture)));
+    }
+
+    private static World findDeadmanWorld(final List<World> worlds) {
+        for (final World world : worlds) {
+            if (world.getDetail().startsWith("Deadman")) {
+                return world;
+            }
+        }
+        throw new AssertionError("No Deadman world in the fixture");
+    }
+}
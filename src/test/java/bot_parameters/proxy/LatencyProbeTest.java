@@ -0,0 +1,214 @@
+package bot_parameters.proxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyProbeTest {
+
+    private static final int TIMEOUT_MS = 1000;
+    private static final long WAIT_SECONDS = 10;
+    private static final String WORLD_HOST = "oldschool%d.example";
+    private static final int WORLD_PORT = 43594;
+
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private ServerSocket server;
+
+    // What the SOCKS5 stand-in answers, and what it was sent
+    private volatile int method;
+    private volatile int authStatus;
+    private volatile int reply;
+    private volatile boolean silent;
+    private volatile String credentials;
+    private volatile String connectTarget;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "socks-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        for (final Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void latencyIsOffByDefault() {
+        assertEquals(0, LatencyProbe.getWeight(), 0);
+        assertNull(LatencyProbe.getInstance());
+    }
+
+    @Test
+    public void measuresDirectConnection() throws Exception {
+        silent = true;
+        LatencyProbe probe = new LatencyProbe(world -> new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                1, TIMEOUT_MS, TimeUnit.MINUTES.toMillis(30));
+
+        long millis = probe.probe(null, 301).get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(millis < TIMEOUT_MS);
+        assertEquals(millis, probe.getLatency(null, 301));
+        assertEquals(-1, probe.getLatency(null, 302));
+    }
+
+    @Test
+    public void measuresThroughProxyWithoutAuthentication() throws Exception {
+        method = 0;
+
+        long millis = newProbe().probe(getProxy(), 301).get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(millis < TIMEOUT_MS);
+        assertNull(credentials);
+        // The world is resolved by the proxy, as it is for the client
+        assertEquals("oldschool1.example:" + WORLD_PORT, connectTarget);
+    }
+
+    @Test
+    public void measuresThroughProxyWithAuthentication() throws Exception {
+        method = 2;
+        authStatus = 0;
+
+        long millis = newProbe().probe(getSecuredProxy(), 302).get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(millis < TIMEOUT_MS);
+        assertEquals("user:secret", credentials);
+        assertEquals("oldschool2.example:" + WORLD_PORT, connectTarget);
+    }
+
+    @Test
+    public void failedAuthenticationCountsAsTimeout() throws Exception {
+        method = 2;
+        authStatus = 1;
+        LatencyProbe probe = newProbe();
+
+        assertEquals(TIMEOUT_MS, (long) probe.probe(getSecuredProxy(), 301).get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("user:secret", credentials);
+        assertNull(connectTarget);
+        assertEquals(TIMEOUT_MS, probe.getLatency(getSecuredProxy(), 301));
+    }
+
+    @Test
+    public void failedConnectCountsAsTimeout() throws Exception {
+        method = 0;
+        reply = 4; // host unreachable
+
+        assertEquals(TIMEOUT_MS, (long) newProbe().probe(getProxy(), 301).get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("oldschool1.example:" + WORLD_PORT, connectTarget);
+    }
+
+    @Test
+    public void silentProxyTimesOut() throws Exception {
+        silent = true;
+
+        long start = System.nanoTime();
+        assertEquals(TIMEOUT_MS, (long) newProbe().probe(getProxy(), 301).get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= TIMEOUT_MS);
+    }
+
+    @Test
+    public void expiredResultsArePruned() throws Exception {
+        method = 0;
+        LatencyProbe probe = new LatencyProbe(world -> InetSocketAddress.createUnresolved(String.format(WORLD_HOST, world - 300), WORLD_PORT),
+                2, TIMEOUT_MS, 200);
+
+        probe.probe(getProxy(), 301).get(WAIT_SECONDS, TimeUnit.SECONDS);
+        probe.probe(getProxy(), 302).get(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, probe.getResultCount());
+
+        Thread.sleep(300);
+        assertEquals(-1, probe.getLatency(getProxy(), 301));
+        assertEquals(1, probe.getResultCount());
+
+        // World 302 is never asked for again, the next round of probes drops it
+        probe.probeAll(getProxy(), Collections.<Integer>emptyList());
+        assertEquals(0, probe.getResultCount());
+    }
+
+    private LatencyProbe newProbe() {
+        return new LatencyProbe(world -> InetSocketAddress.createUnresolved(String.format(WORLD_HOST, world - 300), WORLD_PORT),
+                1, TIMEOUT_MS, TimeUnit.MINUTES.toMillis(30));
+    }
+
+    private Proxy getProxy() {
+        return new Proxy("127.0.0.1", server.getLocalPort());
+    }
+
+    private SecuredProxy getSecuredProxy() {
+        return new SecuredProxy("127.0.0.1", server.getLocalPort(), "user", "secret");
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                if (!silent) {
+                    serve(socket);
+                }
+            } catch (IOException e) {
+                // Closed by tearDown, or the probe hung up
+            }
+        }
+    }
+
+    // Just enough of RFC 1928 and RFC 1929 to answer one CONNECT
+    private void serve(final Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+
+        in.readUnsignedByte();
+        in.skipBytes(in.readUnsignedByte());
+        out.write(new byte[]{5, (byte) method});
+
+        if (method == 2) {
+            in.readUnsignedByte();
+            String username = readString(in, in.readUnsignedByte());
+            String password = readString(in, in.readUnsignedByte());
+            credentials = username + ":" + password;
+            out.write(new byte[]{1, (byte) authStatus});
+            if (authStatus != 0) {
+                socket.close();
+                return;
+            }
+        }
+
+        in.readUnsignedByte();
+        in.readUnsignedByte();
+        in.readUnsignedByte();
+        if (in.readUnsignedByte() != 3) {
+            throw new IOException("Expected a host name");
+        }
+        String host = readString(in, in.readUnsignedByte());
+        connectTarget = host + ":" + in.readUnsignedShort();
+        out.write(new byte[]{5, (byte) reply, 0, 1, 127, 0, 0, 1, 0, 80});
+        out.flush();
+        socket.close();
+    }
+
+    private static String readString(final DataInputStream in, final int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,28 @@
+package bot_process;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ProcessTreeTest {
+
+    @Test
+    public void readsCommandLineFromProcfs() throws Exception {
+        assumeTrue(ProcessTree.isProcfsAvailable());
+
+        Process process = ProcessTree.start(new ProcessBuilder("sleep", "30"));
+        try {
+            assertEquals(Arrays.asList("sleep", "30"), ProcessTree.getCommandLine(ProcessTree.getPID(process)));
+        } finally {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    @Test
+    public void unknownProcessHasNoCommandLine() {
+        assertTrue(ProcessTree.getCommandLine(-1).isEmpty());
+    }
+}
@@ -0,0 +1,51 @@
+package file_manager;
+
+import bot_parameters.account.RunescapeAccount;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SettingsFileManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveReplacesExistingFile() throws Exception {
+        File file = new File(folder.getRoot(), "settings.config");
+        SettingsFileManager.saveSettings(Collections.singletonList(new RunescapeAccount("first", "password", 1234)), file);
+        SettingsFileManager.saveSettings(Collections.singletonList(new RunescapeAccount("second", "password", 1234)), file);
+
+        List<Object> objects = SettingsFileManager.loadSettings(file);
+
+        assertEquals(1, objects.size());
+        assertEquals("second", ((RunescapeAccount) objects.get(0)).getUsername());
+        assertArrayEquals(new String[]{"settings.config"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void failedSaveKeepsPreviousFile() throws Exception {
+        File file = new File(folder.getRoot(), "settings.config");
+        SettingsFileManager.saveSettings(Collections.singletonList(new RunescapeAccount("first", "password", 1234)), file);
+        byte[] saved = Files.readAllBytes(file.toPath());
+
+        // The temporary file can not be created, so the save fails before the settings file is touched
+        File tempDirectory = new File(folder.getRoot(), "settings.config.tmp");
+        assertTrue(new File(tempDirectory, "in the way").mkdirs());
+        try {
+            SettingsFileManager.saveSettings(Collections.singletonList(new RunescapeAccount("second", "password", 1234)), file);
+            fail("The save should have failed");
+        } catch (IOException expected) {
+        }
+
+        assertArrayEquals(saved, Files.readAllBytes(file.toPath()));
+    }
+}